@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The JDK Flight Recorder backed {@link EventTracer}, loaded reflectively by {@link EventTracer#load()}.
+ *
+ * Keeps {@link EventTracer#active} in sync with the running recordings. The thresholds and stack traces can be
+ * changed per recording like any other JFR event.
+ */
+final class JfrEventTracer extends EventTracer implements FlightRecorderListener{
+    JfrEventTracer(){
+        FlightRecorder.addListener(this);
+    }
+    
+    @Override
+    public void recorderInitialized(FlightRecorder recorder){
+        update(recorder);
+    }
+    
+    @Override
+    public void recordingStateChanged(Recording recording){
+        update(FlightRecorder.getFlightRecorder());
+    }
+    
+    private static void update(FlightRecorder recorder){
+        boolean running = false;
+        for(Recording recording : recorder.getRecordings()){
+            if(recording.getState() == RecordingState.RUNNING){
+                running = true;
+                break;
+            }
+        }
+        active = running;
+    }
+    
+    @Override
+    Object beginDispatch(){
+        SlowDispatch event = new SlowDispatch();
+        event.begin();
+        return event;
+    }
+    
+    @Override
+    void endDispatch(Object token, Class<?> type, int handlerCount){
+        SlowDispatch event = (SlowDispatch)token;
+        event.end();
+        if(event.shouldCommit()){
+            event.eventClass = type;
+            event.handlerCount = handlerCount;
+            event.commit();
+        }
+    }
+    
+    @Override
+    Object beginGeneration(){
+        ConsumerGeneration event = new ConsumerGeneration();
+        event.begin();
+        return event;
+    }
+    
+    @Override
+    void endGeneration(Object token, String className, int bytecodeSize){
+        ConsumerGeneration event = (ConsumerGeneration)token;
+        event.end();
+        if(event.shouldCommit()){
+            event.className = className;
+            event.bytecodeSize = bytecodeSize;
+            event.commit();
+        }
+    }
+    
+    @Override
+    void handlersInvalidated(Class<?> type, String reason){
+        HandlerInvalidation event = new HandlerInvalidation();
+        if(event.shouldCommit()){
+            event.eventClass = type;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+    
+    @Name("net.gudenau.events.SlowDispatch")
+    @Label("Slow Event Dispatch")
+    @Description("An event dispatch that took longer than the threshold")
+    @Category("gudEvents")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class SlowDispatch extends Event{
+        @Label("Event Class")
+        Class<?> eventClass;
+        
+        @Label("Handler Count")
+        int handlerCount;
+    }
+    
+    @Name("net.gudenau.events.ConsumerGeneration")
+    @Label("Consumer Generation")
+    @Description("Generation of a consumer class for a handler count")
+    @Category("gudEvents")
+    static final class ConsumerGeneration extends Event{
+        @Label("Class Name")
+        String className;
+        
+        @Label("Bytecode Size")
+        @DataAmount
+        int bytecodeSize;
+    }
+    
+    @Name("net.gudenau.events.HandlerInvalidation")
+    @Label("Handler Invalidation")
+    @Description("A dispatcher threw away its consumer, the next dispatch creates a new one")
+    @Category("gudEvents")
+    static final class HandlerInvalidation extends Event{
+        @Label("Event Class")
+        Class<?> eventClass;
+        
+        @Label("Reason")
+        String reason;
+    }
+}
@@ -0,0 +1,72 @@
+package net.gudenau.eventtest;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventDispatcher;
+
+/**
+ * Checks that the Flight Recorder tracer is picked up on Java 11 and only reports itself active while a recording
+ * runs.
+ */
+public class TracerTest{
+    private TracerTest(){}
+    
+    private static final class PlainEvent extends Event.NonCancelable<Void>{}
+    
+    public static void main(String[] args) throws Exception{
+        // The tracer is package private, the checks have to go through reflection.
+        Class<?> tracer = Class.forName("net.gudenau.events.impl.EventTracer");
+        Field instance = tracer.getDeclaredField("INSTANCE");
+        Field active = tracer.getDeclaredField("active");
+        instance.setAccessible(true);
+        active.setAccessible(true);
+        
+        Object loaded = instance.get(null);
+        check(loaded.getClass().getName().equals("net.gudenau.events.impl.JfrEventTracer"), "the tracer was not loaded, got " + loaded.getClass().getName());
+        check(!active.getBoolean(null), "tracer is active without a recording");
+        
+        EventDispatcher<Void, PlainEvent> dispatcher = EventDispatcher.createInstance();
+        dispatcher.registerHandler((event)->{});
+        dispatcher.dispatchEvent(new PlainEvent());
+        
+        Path file = Files.createTempFile("eventtest", ".jfr");
+        try{
+            try(Recording recording = new Recording()){
+                recording.enable("net.gudenau.events.HandlerInvalidation");
+                recording.start();
+                check(active.getBoolean(null), "tracer is not active while a recording runs");
+                
+                // Throws away the consumer that was generated by the dispatch above.
+                dispatcher.registerHandler((event)->{});
+                
+                recording.stop();
+                check(!active.getBoolean(null), "tracer stayed active after the recording stopped");
+                recording.dump(file);
+            }
+            
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            boolean invalidated = false;
+            for(RecordedEvent event : events){
+                if(event.getEventType().getName().equals("net.gudenau.events.HandlerInvalidation")){
+                    invalidated = true;
+                }
+            }
+            check(invalidated, "the handler invalidation was not recorded");
+        }finally{
+            Files.deleteIfExists(file);
+        }
+        System.out.println("Tracer checks passed");
+    }
+    
+    private static void check(boolean condition, String message){
+        if(!condition){
+            throw new AssertionError(message);
+        }
+    }
+}
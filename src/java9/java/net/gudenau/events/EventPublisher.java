@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import net.gudenau.events.impl.EventPublisherImpl;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Exposes the dispatches of an {@link Event} type as a {@link Flow.Publisher}, this is only available on Java 9 and
+ * newer.
+ *
+ * The publisher is a handler of the dispatcher, every dispatched event is handed to every subscriber. Each subscriber
+ * has its own bounded buffer for events it did not request yet, the {@link Overflow} decides what happens when it is
+ * full. Subscribers are signalled from an {@link Executor} like {@link java.util.concurrent.SubmissionPublisher} does,
+ * so dispatching never blocks on a subscriber and a slow subscriber only loses events.
+ *
+ * Subscribers may see an event after later handlers changed it, they should treat events as read only.
+ *
+ * @param <E> The type of the event
+ */
+public interface EventPublisher<E extends Event<?>> extends Flow.Publisher<E>, AutoCloseable{
+    /**
+     * What to do with an event when the buffer of a subscriber is full.
+     */
+    enum Overflow{
+        /**
+         * Drop the oldest buffered event to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the event that did not fit.
+         */
+        DROP_NEWEST,
+        /**
+         * Cancel the subscription and signal an {@link IllegalStateException} to the subscriber.
+         */
+        ERROR
+    }
+    
+    /**
+     * Creates a publisher for a registered {@link Event} type of a bus that signals its subscribers from the common
+     * {@link java.util.concurrent.ForkJoinPool}, or a new thread per subscriber if the pool can not run in parallel.
+     *
+     * @param bus The bus
+     * @param type The type of the event
+     * @param bufferSize The maximum amount of events buffered per subscriber
+     * @param overflow What to do when a buffer is full
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @return The publisher
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered
+     * @throws IllegalArgumentException If the buffer size is not positive
+     */
+    @NotNull
+    static <T, E extends Event<T>> EventPublisher<E> create(@NotNull EventBus bus, @NotNull Class<E> type, int bufferSize, @NotNull Overflow overflow){
+        return new EventPublisherImpl<>(bus.dispatcherFor(type), bufferSize, overflow, EventPublisherImpl.defaultExecutor());
+    }
+    
+    /**
+     * Creates a publisher for a registered {@link Event} type of a bus.
+     *
+     * @param bus The bus
+     * @param type The type of the event
+     * @param bufferSize The maximum amount of events buffered per subscriber
+     * @param overflow What to do when a buffer is full
+     * @param executor Runs the signals to the subscribers, it should not run tasks on the calling thread
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @return The publisher
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered
+     * @throws IllegalArgumentException If the buffer size is not positive
+     */
+    @NotNull
+    static <T, E extends Event<T>> EventPublisher<E> create(@NotNull EventBus bus, @NotNull Class<E> type, int bufferSize, @NotNull Overflow overflow, @NotNull Executor executor){
+        return new EventPublisherImpl<>(bus.dispatcherFor(type), bufferSize, overflow, executor);
+    }
+    
+    /**
+     * Creates a publisher for the events of a dispatcher that signals its subscribers from the common
+     * {@link java.util.concurrent.ForkJoinPool}, or a new thread per subscriber if the pool can not run in parallel.
+     *
+     * @param dispatcher The dispatcher
+     * @param bufferSize The maximum amount of events buffered per subscriber
+     * @param overflow What to do when a buffer is full
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @return The publisher
+     *
+     * @throws IllegalArgumentException If the buffer size is not positive
+     */
+    @NotNull
+    static <T, E extends Event<T>> EventPublisher<E> create(@NotNull EventDispatcher<T, E> dispatcher, int bufferSize, @NotNull Overflow overflow){
+        return new EventPublisherImpl<>(dispatcher, bufferSize, overflow, EventPublisherImpl.defaultExecutor());
+    }
+    
+    /**
+     * Creates a publisher for the events of a dispatcher.
+     *
+     * @param dispatcher The dispatcher
+     * @param bufferSize The maximum amount of events buffered per subscriber
+     * @param overflow What to do when a buffer is full
+     * @param executor Runs the signals to the subscribers, it should not run tasks on the calling thread
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @return The publisher
+     *
+     * @throws IllegalArgumentException If the buffer size is not positive
+     */
+    @NotNull
+    static <T, E extends Event<T>> EventPublisher<E> create(@NotNull EventDispatcher<T, E> dispatcher, int bufferSize, @NotNull Overflow overflow, @NotNull Executor executor){
+        return new EventPublisherImpl<>(dispatcher, bufferSize, overflow, executor);
+    }
+    
+    /**
+     * Gets the amount of events that where dropped because a buffer was full, summed over every subscriber.
+     *
+     * @return The dropped count
+     */
+    long getDroppedCount();
+    
+    /**
+     * Removes the handler from the dispatcher and completes every subscriber once it received its buffered events.
+     */
+    @Override
+    void close();
+}
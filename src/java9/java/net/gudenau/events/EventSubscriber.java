@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import net.gudenau.events.impl.EventSubscriberImpl;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link Flow.Subscriber} that dispatches every received {@link Event}, this is only available on Java 9 and newer.
+ *
+ * It never requests more than the prefetch amount ahead and requests more as it dispatches, so a fast publisher can
+ * not make it buffer without bounds. Events are dispatched on the thread that calls {@link #onNext(Object)}.
+ *
+ * @param <E> The type of the event
+ */
+public interface EventSubscriber<E extends Event<?>> extends Flow.Subscriber<E>{
+    /**
+     * Creates a subscriber that dispatches to a registered {@link Event} type of a bus.
+     *
+     * @param bus The bus
+     * @param type The type of the event
+     * @param prefetch The maximum amount of requested events that where not received yet
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @return The subscriber
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered
+     * @throws IllegalArgumentException If the prefetch amount is not positive
+     */
+    @NotNull
+    static <T, E extends Event<T>> EventSubscriber<E> create(@NotNull EventBus bus, @NotNull Class<E> type, int prefetch){
+        return new EventSubscriberImpl<>(bus.dispatcherFor(type), prefetch);
+    }
+    
+    /**
+     * Creates a subscriber that dispatches to a dispatcher.
+     *
+     * @param dispatcher The dispatcher
+     * @param prefetch The maximum amount of requested events that where not received yet
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @return The subscriber
+     *
+     * @throws IllegalArgumentException If the prefetch amount is not positive
+     */
+    @NotNull
+    static <T, E extends Event<T>> EventSubscriber<E> create(@NotNull EventDispatcher<T, E> dispatcher, int prefetch){
+        return new EventSubscriberImpl<>(dispatcher, prefetch);
+    }
+    
+    /**
+     * Gets a future that completes when the publisher completes, or completes exceptionally when it fails or a
+     * dispatch throws.
+     *
+     * @return The completion future
+     */
+    @NotNull
+    CompletableFuture<Void> getCompletion();
+    
+    /**
+     * Cancels the subscription, no more events are requested.
+     */
+    void cancel();
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events.impl;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.EventPublisher;
+
+/**
+ * The {@link EventPublisher} implementation.
+ *
+ * Every subscription has a bounded queue and its outstanding demand behind a lock. Signals to a subscriber, including
+ * onSubscribe, are only sent from {@link Subscription#drain()}, which runs on the executor and a work counter keeps to
+ * a single task at a time, so they never overlap. The dispatching thread only ever enqueues and schedules a drain, it
+ * only calls into a subscriber to fail it when the executor rejects the drain.
+ */
+public final class EventPublisherImpl<T, E extends Event<T>> implements EventPublisher<E>{
+    private final EventDispatcher<T, E> dispatcher;
+    private final int bufferSize;
+    private final Overflow overflow;
+    private final Executor executor;
+    private final Consumer<E> handler = this::publish;
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed = false;
+    
+    public EventPublisherImpl(EventDispatcher<T, E> dispatcher, int bufferSize, Overflow overflow, Executor executor){
+        if(bufferSize <= 0){
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        this.dispatcher = dispatcher;
+        this.bufferSize = bufferSize;
+        this.overflow = Objects.requireNonNull(overflow, "overflow");
+        this.executor = Objects.requireNonNull(executor, "executor");
+        dispatcher.registerHandler(handler);
+    }
+    
+    /**
+     * Gets the executor that {@link java.util.concurrent.SubmissionPublisher} would use by default.
+     *
+     * @return The common pool, or a thread per task if the common pool can not run in parallel
+     */
+    public static Executor defaultExecutor(){
+        if(ForkJoinPool.getCommonPoolParallelism() > 1){
+            return ForkJoinPool.commonPool();
+        }
+        return (task)->new Thread(task).start();
+    }
+    
+    @Override
+    public void subscribe(Flow.Subscriber<? super E> subscriber){
+        Objects.requireNonNull(subscriber, "subscriber");
+        Subscription subscription = new Subscription(subscriber);
+        subscriptions.add(subscription);
+        if(closed){
+            subscription.complete();
+        }else{
+            subscription.signal();
+        }
+    }
+    
+    private void publish(E event){
+        for(Subscription subscription : subscriptions){
+            subscription.offer(event);
+        }
+    }
+    
+    @Override
+    public long getDroppedCount(){
+        return dropped.sum();
+    }
+    
+    @Override
+    public void close(){
+        if(closed){
+            return;
+        }
+        closed = true;
+        dispatcher.removeHandler(handler);
+        for(Subscription subscription : subscriptions){
+            subscription.complete();
+        }
+    }
+    
+    private final class Subscription implements Flow.Subscription{
+        private final Flow.Subscriber<? super E> subscriber;
+        private final AtomicInteger work = new AtomicInteger();
+        // Only touched by whoever holds the work counter.
+        private boolean subscribed = false;
+        
+        private final Lock lock = new ReentrantLock();
+        private final ArrayDeque<E> queue = new ArrayDeque<>();
+        private long demand = 0;
+        private boolean completed = false;
+        private Throwable error = null;
+        private boolean cancelled = false;
+        
+        private Subscription(Flow.Subscriber<? super E> subscriber){
+            this.subscriber = subscriber;
+        }
+        
+        void offer(E event){
+            lock.lock();
+            try{
+                if(cancelled || error != null){
+                    return;
+                }
+                if(queue.size() == bufferSize){
+                    dropped.increment();
+                    switch(overflow){
+                        case DROP_OLDEST:
+                            queue.poll();
+                            break;
+                        case DROP_NEWEST:
+                            return;
+                        case ERROR:
+                            queue.clear();
+                            error = new IllegalStateException("Subscriber buffer of " + bufferSize + " events overflowed");
+                            return;
+                    }
+                }
+                queue.offer(event);
+            }finally{
+                lock.unlock();
+                signal();
+            }
+        }
+        
+        void complete(){
+            lock.lock();
+            completed = true;
+            lock.unlock();
+            signal();
+        }
+        
+        /**
+         * Schedules a drain on the executor, unless one is already running or scheduled.
+         */
+        void signal(){
+            if(work.getAndIncrement() != 0){
+                return;
+            }
+            try{
+                executor.execute(this::drain);
+            }catch(RejectedExecutionException e){
+                // Nothing can signal this subscriber anymore, fail it right here. The work counter stays taken, so
+                // this thread owns the signals now.
+                lock.lock();
+                boolean terminated = cancelled;
+                cancelled = true;
+                queue.clear();
+                lock.unlock();
+                subscriptions.remove(this);
+                if(!terminated){
+                    if(!subscribed){
+                        subscribed = true;
+                        subscriber.onSubscribe(this);
+                    }
+                    subscriber.onError(e);
+                }
+            }
+        }
+        
+        @Override
+        public void request(long n){
+            lock.lock();
+            if(n <= 0){
+                queue.clear();
+                error = new IllegalArgumentException("Requested " + n + " events, the amount must be positive");
+            }else{
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            lock.unlock();
+            signal();
+        }
+        
+        @Override
+        public void cancel(){
+            lock.lock();
+            cancelled = true;
+            queue.clear();
+            lock.unlock();
+            subscriptions.remove(this);
+        }
+        
+        /**
+         * Sends every signal that is allowed right now, {@link #signal()} only ever schedules one of these at a time.
+         */
+        private void drain(){
+            if(!subscribed){
+                subscribed = true;
+                try{
+                    subscriber.onSubscribe(this);
+                }catch(Throwable t){
+                    cancel();
+                    return;
+                }
+            }
+            int missed = 1;
+            do{
+                while(true){
+                    E event = null;
+                    Throwable error = null;
+                    boolean complete = false;
+                    lock.lock();
+                    if(cancelled){
+                        lock.unlock();
+                        return;
+                    }
+                    if(this.error != null){
+                        error = this.error;
+                        cancelled = true;
+                    }else if(demand > 0 && !queue.isEmpty()){
+                        event = queue.poll();
+                        demand--;
+                    }else if(completed && queue.isEmpty()){
+                        complete = true;
+                        cancelled = true;
+                    }
+                    lock.unlock();
+                    
+                    if(error != null){
+                        subscriptions.remove(this);
+                        subscriber.onError(error);
+                        return;
+                    }else if(complete){
+                        subscriptions.remove(this);
+                        subscriber.onComplete();
+                        return;
+                    }else if(event == null){
+                        break;
+                    }
+                    try{
+                        subscriber.onNext(event);
+                    }catch(Throwable t){
+                        // A misbehaving subscriber must not break the dispatch, treat it as cancelled.
+                        cancel();
+                        return;
+                    }
+                }
+                missed = work.addAndGet(-missed);
+            }while(missed != 0);
+        }
+    }
+}
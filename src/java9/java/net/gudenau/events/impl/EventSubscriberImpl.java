@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events.impl;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.EventSubscriber;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The {@link EventSubscriber} implementation.
+ *
+ * Requests the prefetch amount up front and tops it back up once half of it was dispatched, so there are never more
+ * than prefetch requested events in flight.
+ */
+public final class EventSubscriberImpl<T, E extends Event<T>> implements EventSubscriber<E>{
+    private final EventDispatcher<T, E> dispatcher;
+    private final int prefetch;
+    private final int refill;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    
+    private volatile Flow.Subscription subscription = null;
+    private volatile boolean cancelled = false;
+    
+    // Only touched by the publisher, which signals one at a time.
+    private int consumed = 0;
+    
+    public EventSubscriberImpl(EventDispatcher<T, E> dispatcher, int prefetch){
+        if(prefetch <= 0){
+            throw new IllegalArgumentException("Prefetch must be positive");
+        }
+        this.dispatcher = dispatcher;
+        this.prefetch = prefetch;
+        this.refill = Math.max(1, prefetch / 2);
+    }
+    
+    @Override
+    public void onSubscribe(Flow.Subscription subscription){
+        Objects.requireNonNull(subscription, "subscription");
+        if(this.subscription != null || cancelled){
+            // Only one subscription at a time.
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(prefetch);
+    }
+    
+    @Override
+    public void onNext(E event){
+        Objects.requireNonNull(event, "event");
+        if(cancelled){
+            return;
+        }
+        try{
+            dispatcher.dispatchEvent(event);
+        }catch(RuntimeException e){
+            cancel();
+            completion.completeExceptionally(e);
+            return;
+        }
+        if(++consumed == refill){
+            consumed = 0;
+            subscription.request(refill);
+        }
+    }
+    
+    @Override
+    public void onError(Throwable throwable){
+        completion.completeExceptionally(Objects.requireNonNull(throwable, "throwable"));
+    }
+    
+    @Override
+    public void onComplete(){
+        completion.complete(null);
+    }
+    
+    @NotNull
+    @Override
+    public CompletableFuture<Void> getCompletion(){
+        return completion;
+    }
+    
+    @Override
+    public void cancel(){
+        cancelled = true;
+        Flow.Subscription subscription = this.subscription;
+        if(subscription != null){
+            subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package net.gudenau.eventtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.EventPublisher;
+import net.gudenau.events.EventSubscriber;
+
+/**
+ * Checks the {@link Flow} adapters: demand, overflow of the subscriber buffers and completion after the publisher is
+ * closed.
+ */
+public class FlowTest{
+    private FlowTest(){}
+    
+    private static final class ValueEvent extends Event.NonCancelable<Integer>{
+        private ValueEvent(int value){
+            super(value);
+        }
+    }
+    
+    public static void main(String[] args) throws Exception{
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try{
+            demand(executor);
+            dropOldest(executor);
+            completion(executor);
+            subscriber(executor);
+        }finally{
+            executor.shutdown();
+        }
+        System.out.println("Flow checks passed");
+    }
+    
+    private static void demand(ExecutorService executor) throws Exception{
+        EventDispatcher<Integer, ValueEvent> dispatcher = EventDispatcher.createInstance();
+        EventPublisher<ValueEvent> publisher = EventPublisher.create(dispatcher, 16, EventPublisher.Overflow.ERROR, executor);
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        settle(executor);
+        check(recorder.subscription != null, "subscriber was not subscribed");
+        
+        dispatch(dispatcher, 0, 1, 2, 3, 4);
+        settle(executor);
+        check(recorder.values.isEmpty(), "events where delivered without demand");
+        recorder.subscription.request(2);
+        settle(executor);
+        check(recorder.values.equals(Arrays.asList(0, 1)), "request(2) delivered " + recorder.values);
+        recorder.subscription.request(10);
+        settle(executor);
+        check(recorder.values.equals(Arrays.asList(0, 1, 2, 3, 4)), "the buffered events where not delivered in order: " + recorder.values);
+        dispatch(dispatcher, 5);
+        settle(executor);
+        check(recorder.values.size() == 6, "left over demand was not used");
+        check(publisher.getDroppedCount() == 0, "events where dropped below the buffer size");
+        publisher.close();
+    }
+    
+    private static void dropOldest(ExecutorService executor) throws Exception{
+        EventDispatcher<Integer, ValueEvent> dispatcher = EventDispatcher.createInstance();
+        EventPublisher<ValueEvent> publisher = EventPublisher.create(dispatcher, 2, EventPublisher.Overflow.DROP_OLDEST, executor);
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        settle(executor);
+        
+        dispatch(dispatcher, 0, 1, 2, 3, 4);
+        check(publisher.getDroppedCount() == 3, "dropped " + publisher.getDroppedCount() + " events instead of 3");
+        recorder.subscription.request(5);
+        settle(executor);
+        check(recorder.values.equals(Arrays.asList(3, 4)), "the newest events where not kept: " + recorder.values);
+        publisher.close();
+    }
+    
+    private static void completion(ExecutorService executor) throws Exception{
+        EventDispatcher<Integer, ValueEvent> dispatcher = EventDispatcher.createInstance();
+        EventPublisher<ValueEvent> publisher = EventPublisher.create(dispatcher, 16, EventPublisher.Overflow.ERROR, executor);
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        settle(executor);
+        
+        dispatch(dispatcher, 0, 1);
+        publisher.close();
+        settle(executor);
+        check(recorder.completed.getCount() == 1, "completed before the buffered events where delivered");
+        recorder.subscription.request(2);
+        check(recorder.completed.await(5, TimeUnit.SECONDS), "close did not complete the subscriber");
+        check(recorder.values.equals(Arrays.asList(0, 1)), "buffered events where lost on close: " + recorder.values);
+        
+        dispatch(dispatcher, 2);
+        settle(executor);
+        check(recorder.values.size() == 2, "an event dispatched after close was delivered");
+        
+        Recorder late = new Recorder();
+        publisher.subscribe(late);
+        check(late.completed.await(5, TimeUnit.SECONDS), "subscribing to a closed publisher did not complete");
+    }
+    
+    private static void subscriber(ExecutorService executor) throws Exception{
+        EventDispatcher<Integer, ValueEvent> source = EventDispatcher.createInstance();
+        EventDispatcher<Integer, ValueEvent> target = EventDispatcher.createInstance();
+        List<Integer> received = new ArrayList<>();
+        target.registerHandler((event)->received.add(event.getOriginalValue().orElse(-1)));
+        
+        EventPublisher<ValueEvent> publisher = EventPublisher.create(source, 16, EventPublisher.Overflow.ERROR, executor);
+        EventSubscriber<ValueEvent> subscriber = EventSubscriber.create(target, 2);
+        publisher.subscribe(subscriber);
+        settle(executor);
+        
+        dispatch(source, 0, 1, 2, 3, 4);
+        publisher.close();
+        subscriber.getCompletion().get(5, TimeUnit.SECONDS);
+        check(received.equals(Arrays.asList(0, 1, 2, 3, 4)), "subscriber dispatched " + received);
+    }
+    
+    private static void dispatch(EventDispatcher<Integer, ValueEvent> dispatcher, int... values){
+        for(int value : values){
+            dispatcher.dispatchEvent(new ValueEvent(value));
+        }
+    }
+    
+    /**
+     * Waits for the signals that are already scheduled, the executor has a single thread so they run in order.
+     */
+    private static void settle(ExecutorService executor) throws Exception{
+        executor.submit(()->{}).get(5, TimeUnit.SECONDS);
+    }
+    
+    private static final class Recorder implements Flow.Subscriber<ValueEvent>{
+        private final List<Integer> values = new ArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription){
+            this.subscription = subscription;
+        }
+        
+        @Override
+        public void onNext(ValueEvent item){
+            values.add(item.getOriginalValue().orElse(-1));
+        }
+        
+        @Override
+        public void onError(Throwable throwable){
+            throw new AssertionError("subscriber failed", throwable);
+        }
+        
+        @Override
+        public void onComplete(){
+            completed.countDown();
+        }
+    }
+    
+    private static void check(boolean condition, String message){
+        if(!condition){
+            throw new AssertionError(message);
+        }
+    }
+}
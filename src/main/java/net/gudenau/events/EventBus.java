@@ -20,9 +20,16 @@
 package net.gudenau.events;
 
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import net.gudenau.events.impl.CompactEventBus;
 import net.gudenau.events.impl.EventBusImpl;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * An event bus interface for when you don't need speed and want convenience.
@@ -48,6 +55,19 @@ public interface EventBus{
         return new EventBusImpl();
     }
     
+    /**
+     * Creates a non-shared {@link EventBus} with a minimal memory footprint, for when there is one per object.
+     *
+     * Every registered type uses a compact dispatcher, see {@link EventDispatcher#createCompactInstance()}. Compact
+     * buses do not support coalescing, deferred posting, journals, parallel dispatch or result caches. Posted events
+     * are dispatched right away and the flush methods do nothing.
+     *
+     * @return The new {@link EventBus}
+     */
+    static EventBus createCompactInstance(){
+        return new CompactEventBus();
+    }
+    
     /**
      * Registers a new {@link Event} type.
      *
@@ -69,6 +89,22 @@ public interface EventBus{
      */
     <T, E extends Event<T>> void registerHandler(@NotNull Class<E> event, @NotNull Consumer<E> handler);
     
+    /**
+     * Registers an event handler into a {@link HandlerGroup}, it is only called while the group is enabled.
+     *
+     * @param event The type of the event the handler handles
+     * @param group The group of the handler
+     * @param handler The handler itself
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered
+     * @throws UnsupportedOperationException If this bus does not support handler groups, the default
+     */
+    default <T, E extends Event<T>> void registerHandler(@NotNull Class<E> event, @NotNull HandlerGroup group, @NotNull Consumer<E> handler){
+        throw new UnsupportedOperationException("Handler groups are not supported by this bus");
+    }
+    
     /**
      * Attempts to remove an event handler from this bus.
      *
@@ -91,4 +127,256 @@ public interface EventBus{
      * @throws IllegalStateException If the {@link Event} was not registered
      */
     <T, E extends Event<T>> Optional<T> dispatchEvent(@NotNull E event);
+    
+    /**
+     * Checks if an {@link Event} type has any handlers.
+     *
+     * @param event The type of the event
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @return True if at least one handler is registered
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered
+     */
+    <T, E extends Event<T>> boolean hasHandlers(@NotNull Class<E> event);
+    
+    /**
+     * Dispatches a lazily created {@link Event} to this {@link EventBus}, the event is only created when the type has
+     * handlers.
+     *
+     * Like {@link #dispatcherFor(Class)} the class of the created event is not checked.
+     *
+     * @param event The type of the event
+     * @param factory Creates the event to dispatch
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @return The result of the event, empty when there where no handlers
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered
+     */
+    default <T, E extends Event<T>> Optional<T> dispatchEvent(@NotNull Class<E> event, @NotNull Supplier<E> factory){
+        return hasHandlers(event) ? dispatchEvent(factory.get()) : Optional.empty();
+    }
+    
+    /**
+     * Dispatches a lazily created {@link Event} to this {@link EventBus}, the event is only created when the type has
+     * handlers.
+     *
+     * Like {@link #dispatcherFor(Class)} the class of the created event is not checked.
+     *
+     * @param event The type of the event
+     * @param factory Creates the event to dispatch from the value
+     * @param value The value to pass to the factory
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     * @param <V> The type of the value
+     *
+     * @return The result of the event, empty when there where no handlers
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered
+     */
+    default <T, E extends Event<T>, V> Optional<T> dispatchEvent(@NotNull Class<E> event, @NotNull Function<? super V, E> factory, V value){
+        return hasHandlers(event) ? dispatchEvent(factory.apply(value)) : Optional.empty();
+    }
+    
+    /**
+     * Marks a registered {@link Event} type as coalescable, the latest posted event for a key wins.
+     *
+     * Events posted with {@link #postCoalesced(Event)} are held until {@link #flushCoalesced()} is called, only the
+     * latest event for every key is dispatched.
+     *
+     * @param event The type of the event
+     * @param key Extracts the coalescing key from an event, null is a valid key
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered or is already coalescable
+     * @throws UnsupportedOperationException If this bus does not support coalescing, the default
+     */
+    default <T, E extends Event<T>> void registerCoalescing(@NotNull Class<E> event, @NotNull Function<? super E, ?> key){
+        throw new UnsupportedOperationException("Coalescing is not supported by this bus");
+    }
+    
+    /**
+     * Marks a registered {@link Event} type as coalescable.
+     *
+     * Events posted with {@link #postCoalesced(Event)} are held until {@link #flushCoalesced()} is called, events that
+     * share a key are combined with the merger. If more than capacity keys are staged events with new keys are
+     * dispatched right away instead of being staged.
+     *
+     * @param event The type of the event
+     * @param key Extracts the coalescing key from an event, null is a valid key
+     * @param merger Combines the staged event (first) with the newly posted one (second), must not return null
+     * @param capacity The maximum amount of staged keys
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered or is already coalescable
+     * @throws IllegalArgumentException If capacity is not positive
+     * @throws UnsupportedOperationException If this bus does not support coalescing, the default
+     */
+    default <T, E extends Event<T>> void registerCoalescing(@NotNull Class<E> event, @NotNull Function<? super E, ?> key, @NotNull BinaryOperator<E> merger, int capacity){
+        throw new UnsupportedOperationException("Coalescing is not supported by this bus");
+    }
+    
+    /**
+     * Stages a coalescable {@link Event} until the next {@link #flushCoalesced()}.
+     *
+     * The result of the event is not available to the poster, it may be merged away before it is dispatched. The
+     * default implementation dispatches the event right away.
+     *
+     * @param event The {@link Event} to stage
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @throws IllegalStateException If the {@link Event} type was not marked as coalescable
+     * @throws NullPointerException If the merger of the type returned null, the staged event is kept
+     */
+    default <T, E extends Event<T>> void postCoalesced(@NotNull E event){
+        dispatchEvent(event);
+    }
+    
+    /**
+     * Dispatches every staged coalescable {@link Event} on the calling thread.
+     *
+     * The default implementation has nothing staged and does nothing.
+     *
+     * @return The amount of events that where dispatched
+     */
+    default int flushCoalesced(){
+        return 0;
+    }
+    
+    /**
+     * Queues an {@link Event} to be dispatched by the next {@link #flush()}, this is safe to call from any thread.
+     *
+     * Coalescable events are staged as if {@link #postCoalesced(Event)} was called. The default implementation
+     * dispatches the event right away on the calling thread.
+     *
+     * @param event The {@link Event} to queue
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @throws IllegalStateException If the {@link Event} was not registered
+     */
+    default <T, E extends Event<T>> void post(@NotNull E event){
+        dispatchEvent(event);
+    }
+    
+    /**
+     * Dispatches every queued and staged {@link Event} on the calling thread.
+     *
+     * Queued events are grouped by type, every group is dispatched with a single snapshot of its handlers. Only one
+     * thread can flush at a time, calling this from a handler that is being flushed does nothing. If a handler throws,
+     * the exception is passed on and the groups that where not dispatched yet stay queued for the next flush.
+     *
+     * The default implementation has nothing queued and does nothing.
+     *
+     * @return The amount of events that where dispatched
+     */
+    default int flush(){
+        return 0;
+    }
+    
+    /**
+     * Dispatches queued and staged {@link Event}s on the calling thread until the queue is empty or the budget runs
+     * out, the events that did not fit are kept for the next flush.
+     *
+     * @param budget The maximum time to spend dispatching
+     * @param unit The unit of the budget
+     *
+     * @return The amount of events that where dispatched
+     */
+    default int flush(long budget, @NotNull TimeUnit unit){
+        return flush();
+    }
+    
+    /**
+     * Attaches a journal to this bus, every dispatch of a type the journal records is appended to it.
+     *
+     * @param journal The journal to attach, or null to detach the current one
+     *
+     * @throws IllegalArgumentException If the journal was not created by {@link EventJournal#open}
+     * @throws UnsupportedOperationException If a journal is passed and this bus does not support journals, the default
+     */
+    default void setJournal(@Nullable EventJournal journal){
+        if(journal != null){
+            throw new UnsupportedOperationException("Journals are not supported by this bus");
+        }
+    }
+    
+    /**
+     * Enables or disables running the handlers of an {@link Event} type in parallel.
+     *
+     * @param event The type of the event
+     * @param pool The pool to run handlers on, or null to run them serially
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered
+     * @throws UnsupportedOperationException If a pool is passed and this bus can not run handlers in parallel, the
+     * default
+     *
+     * @see EventDispatcher#setParallel(ForkJoinPool)
+     */
+    default <T, E extends Event<T>> void setParallel(@NotNull Class<E> event, @Nullable ForkJoinPool pool){
+        if(pool != null){
+            throw new UnsupportedOperationException("Parallel dispatch is not supported by this bus");
+        }
+    }
+    
+    /**
+     * Enables caching the results of a registered {@link Event} type, see {@link EventDispatcher#enableResultCache(int)}.
+     *
+     * @param event The type of the event
+     * @param capacity The maximum amount of results to keep
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @return The cache, for statistics and manual invalidation
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered
+     * @throws UnsupportedOperationException If this bus does not support result caches, the default
+     */
+    @NotNull
+    default <T, E extends Event<T>> ResultCache enableResultCache(@NotNull Class<E> event, int capacity){
+        throw new UnsupportedOperationException("Result caches are not supported by this bus");
+    }
+    
+    /**
+     * Gets the {@link EventDispatcher} this bus uses for an {@link Event} type.
+     *
+     * The dispatcher is owned by the bus and stays the same for the lifetime of the bus, so it can be kept in a static
+     * final field to dispatch without looking the type up every time. It shares its handlers and settings with the
+     * bus, changes made through either one apply to both right away.
+     *
+     * Unlike {@link #dispatchEvent(Event)} the dispatcher does not check the class of the events it is handed.
+     *
+     * @param event The type of the event
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @return The dispatcher of the type
+     *
+     * @throws IllegalStateException If the {@link Event} type was not registered
+     * @throws UnsupportedOperationException If this bus does not hand out its dispatchers, the default
+     */
+    @NotNull
+    default <T, E extends Event<T>> EventDispatcher<T, E> dispatcherFor(@NotNull Class<E> event){
+        throw new UnsupportedOperationException("Dispatcher handles are not supported by this bus");
+    }
+    
+    /**
+     * Freezes every registered {@link Event} type, see {@link EventDispatcher#freeze()}.
+     *
+     * Afterwards no events or handlers can be registered or removed and dispatching skips all locks,
+     * {@link #dispatcherFor(Class)} returns the frozen dispatchers. Handles that where obtained before keep working.
+     *
+     * @throws UnsupportedOperationException If this bus can not be frozen, the default
+     */
+    default void freeze(){
+        throw new UnsupportedOperationException("Freezing is not supported by this bus");
+    }
 }
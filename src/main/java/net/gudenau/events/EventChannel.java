@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import net.gudenau.events.impl.EventChannelReader;
+import net.gudenau.events.impl.EventChannelWriter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Moves {@link Event}s between JVMs on the same host through a memory-mapped ring file.
+ *
+ * The file has a single {@link Writer} and any amount of {@link Reader}s. Every event gets a sequence number, a reader
+ * that falls more than a full ring behind the writer skips ahead and counts the events it missed instead of blocking
+ * the writer. Neither side makes any system calls after the file is opened.
+ */
+public interface EventChannel{
+    /**
+     * Opens a ring file for writing, creating it if required.
+     *
+     * An existing file with the same geometry is continued where the last writer left off and a file of the same size
+     * is reset. Files of another size are rejected, resizing them would crash readers that still have them mapped.
+     *
+     * @param path The path of the ring file
+     * @param slotCount The amount of events the ring can hold
+     * @param slotSize The size of a single slot in bytes, including a 16 byte header. Must be a multiple of 8
+     *
+     * @return The new writer
+     *
+     * @throws IOException If the file could not be opened or has a different size
+     * @throws IllegalStateException If another writer has the file open
+     * @throws IllegalArgumentException If the geometry is invalid
+     */
+    @NotNull
+    static Writer openWriter(@NotNull Path path, int slotCount, int slotSize) throws IOException{
+        return EventChannelWriter.open(path, slotCount, slotSize);
+    }
+    
+    /**
+     * Opens a ring file for reading, the reader dispatches received events to the provided {@link EventBus}.
+     *
+     * The reader starts at the latest event that was written, older events are not delivered.
+     *
+     * @param path The path of the ring file
+     * @param bus The bus to dispatch received events to
+     *
+     * @return The new reader
+     *
+     * @throws IOException If the file could not be opened or is not a ring file
+     */
+    @NotNull
+    static Reader openReader(@NotNull Path path, @NotNull EventBus bus) throws IOException{
+        return EventChannelReader.open(path, bus);
+    }
+    
+    /**
+     * The writing side of a ring file.
+     */
+    interface Writer extends Closeable{
+        /**
+         * Binds a codec to an {@link Event} type so it can be published.
+         *
+         * The id of a type in the ring is derived from its name, both sides have to use the same class name.
+         *
+         * @param type The type of the event
+         * @param codec The codec of the event
+         * @param <E> The type of the event
+         *
+         * @throws IllegalStateException If the type, or a type with a colliding id, was already bound
+         */
+        <E extends Event<?>> void bind(@NotNull Class<E> type, @NotNull EventCodec<E> codec);
+        
+        /**
+         * Binds a codec to an {@link Event} type and publishes every event of that type that is dispatched on a bus.
+         *
+         * @param bus The bus to listen on
+         * @param type The type of the event
+         * @param codec The codec of the event
+         * @param <T> The result type of the event
+         * @param <E> The type of the event
+         *
+         * @throws IllegalStateException If the type was already bound or was not registered to the bus
+         */
+        <T, E extends Event<T>> void bridge(@NotNull EventBus bus, @NotNull Class<E> type, @NotNull EventCodec<E> codec);
+        
+        /**
+         * Writes an {@link Event} into the ring.
+         *
+         * @param event The event to write
+         * @param <E> The type of the event
+         *
+         * @throws IllegalStateException If the event type was not bound
+         * @throws IllegalArgumentException If the encoded event does not fit in a slot
+         */
+        <E extends Event<?>> void publish(@NotNull E event);
+        
+        /**
+         * Gets the sequence number of the last written event.
+         *
+         * @return The last sequence number, 0 if nothing was written yet
+         */
+        long getSequence();
+    }
+    
+    /**
+     * The reading side of a ring file, a single reader must only be polled from one thread at a time.
+     */
+    interface Reader extends Closeable{
+        /**
+         * Binds a codec to an {@link Event} type so it can be received, events of unbound types are skipped.
+         *
+         * @param type The type of the event
+         * @param codec The codec of the event
+         * @param <E> The type of the event
+         *
+         * @throws IllegalStateException If the type, or a type with a colliding id, was already bound
+         */
+        <E extends Event<?>> void bind(@NotNull Class<E> type, @NotNull EventCodec<E> codec);
+        
+        /**
+         * Dispatches every event that is available.
+         *
+         * @return The amount of dispatched events
+         */
+        int poll();
+        
+        /**
+         * Dispatches up to a limited amount of available events.
+         *
+         * @param limit The maximum amount of events to dispatch
+         *
+         * @return The amount of dispatched events
+         */
+        int poll(int limit);
+        
+        /**
+         * Gets the amount of events that where overwritten before this reader could read them.
+         *
+         * @return The amount of lost events
+         */
+        long getLostCount();
+    }
+}
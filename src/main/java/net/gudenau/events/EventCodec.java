@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events;
+
+import java.nio.ByteBuffer;
+import net.gudenau.events.impl.CodecGenerator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Converts {@link Event}s to and from a binary form.
+ *
+ * Codecs only ever see buffers that are positioned at the start of the event, they must not depend on the absolute
+ * position of the data.
+ *
+ * @param <E> The type of the event
+ */
+public interface EventCodec<E extends Event<?>>{
+    /**
+     * Gets the generated codec of an {@link Event} class, codecs are generated once per class and then cached.
+     *
+     * Generated codecs write the fields of the event, including the original value, value and canceled state of the
+     * base {@link Event}. Supported fields are primitives, strings, enums and objects whose fields are supported;
+     * fields of non-concrete types, like the values of the event, are written together with their runtime type.
+     * Static, transient and synthetic fields are skipped, decoding does not call a constructor.
+     *
+     * @param type The event class
+     * @param <E> The type of the event
+     *
+     * @return The codec
+     *
+     * @throws IllegalArgumentException If the class has fields that are not supported
+     * @throws UnsupportedOperationException If the runtime does not allow generated codecs
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    static <E extends Event<?>> EventCodec<E> generate(@NotNull Class<E> type){
+        return (EventCodec<E>)CodecGenerator.getCodec(type);
+    }
+    
+    /**
+     * Writes an event into a buffer, starting at the current position of the buffer.
+     *
+     * @param event The event to write
+     * @param buffer The buffer to write to
+     *
+     * @throws java.nio.BufferOverflowException If the event does not fit in the buffer
+     */
+    void encode(@NotNull E event, @NotNull ByteBuffer buffer);
+    
+    /**
+     * Reads an event from a buffer, starting at the current position of the buffer.
+     *
+     * @param buffer The buffer to read from
+     *
+     * @return The read event
+     *
+     * @throws java.nio.BufferUnderflowException If the buffer does not contain a complete event
+     */
+    @NotNull
+    E decode(@NotNull ByteBuffer buffer);
+}
@@ -19,10 +19,16 @@
 
 package net.gudenau.events;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import net.gudenau.events.impl.CompactEventDispatcher;
 import net.gudenau.events.impl.EventDispatcherImpl;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Allows for the dispatch and handling of events.
@@ -42,6 +48,21 @@ public interface EventDispatcher<T, E extends Event<?>>{
         return new EventDispatcherImpl<>();
     }
     
+    /**
+     * Creates an event dispatcher with a minimal memory footprint, for when there are millions of them.
+     *
+     * A compact dispatcher is a single reference to an immutable handler list. Dispatchers with the same handlers in
+     * the same order share that list and its generated code. Handlers are called in registration order. Changing
+     * handlers is more expensive, parallel dispatch and result caches are not supported.
+     *
+     * @param <T> The return type of the event
+     * @param <E> The type of the event
+     * @return The dispatcher
+     */
+    static <T, E extends Event<T>> @NotNull EventDispatcher<T, E> createCompactInstance(){
+        return new CompactEventDispatcher<>();
+    }
+    
     /**
      * Registers an event handler to this event dispatcher.
      *
@@ -49,6 +70,20 @@ public interface EventDispatcher<T, E extends Event<?>>{
      */
     void registerHandler(@NotNull Consumer<E> handler);
     
+    /**
+     * Registers an event handler into a {@link HandlerGroup}, it is only called while the group is enabled.
+     *
+     * {@link #removeHandler(Consumer)} removes it like any other handler.
+     *
+     * @param group The group of the handler
+     * @param handler The event handler
+     *
+     * @throws UnsupportedOperationException If this dispatcher does not support handler groups, the default
+     */
+    default void registerHandler(@NotNull HandlerGroup group, @NotNull Consumer<E> handler){
+        throw new UnsupportedOperationException("Handler groups are not supported by this dispatcher");
+    }
+    
     /**
      * Tries to removes a registered event handler from this dispatcher.
      *
@@ -64,4 +99,114 @@ public interface EventDispatcher<T, E extends Event<?>>{
      * @return The result of the event
      */
     Optional<T> dispatchEvent(@NotNull E event);
+    
+    /**
+     * Checks if this dispatcher has any handlers, this is a single volatile read.
+     *
+     * @return True if at least one handler is registered
+     */
+    boolean hasHandlers();
+    
+    /**
+     * Submits a lazily created event to be handled.
+     *
+     * The event is only created when there is at least one handler, so emitting events nobody listens to is almost
+     * free.
+     *
+     * @param factory Creates the event to dispatch
+     *
+     * @return The result of the event, empty when there where no handlers
+     */
+    default Optional<T> dispatchEvent(@NotNull Supplier<E> factory){
+        return hasHandlers() ? dispatchEvent(factory.get()) : Optional.empty();
+    }
+    
+    /**
+     * Submits a lazily created event to be handled, this avoids capturing a lambda at the call site.
+     *
+     * The event is only created when there is at least one handler, so emitting events nobody listens to is almost
+     * free.
+     *
+     * @param factory Creates the event to dispatch from the value
+     * @param value The value to pass to the factory
+     * @param <V> The type of the value
+     *
+     * @return The result of the event, empty when there where no handlers
+     */
+    default <V> Optional<T> dispatchEvent(@NotNull Function<? super V, E> factory, V value){
+        return hasHandlers() ? dispatchEvent(factory.apply(value)) : Optional.empty();
+    }
+    
+    /**
+     * Submits a batch of events to be handled, all of them see the same set of handlers.
+     *
+     * The results are available from the events themselves once this returns. The default implementation dispatches
+     * the events one by one, so handlers that change while it runs may be seen by part of the batch.
+     *
+     * @param events The events to dispatch
+     */
+    default void dispatchEvents(@NotNull List<E> events){
+        for(E event : events){
+            dispatchEvent(event);
+        }
+    }
+    
+    /**
+     * Enables or disables running the handlers of this dispatcher in parallel.
+     *
+     * Only {@link Event.NonCancelable} events are affected, cancelable events always run their handlers in order. The
+     * cost of every handler is measured, expensive handlers are spread across the pool and cheap ones keep running on
+     * the dispatching thread. {@link #dispatchEvent(Event)} still returns after every handler finished.
+     *
+     * Handlers that run in parallel must not depend on each other, they all see the same event at the same time.
+     *
+     * @param pool The pool to run handlers on, or null to run them serially
+     *
+     * @throws UnsupportedOperationException If a pool is passed and this dispatcher can not run handlers in parallel,
+     * the default
+     */
+    default void setParallel(@Nullable ForkJoinPool pool){
+        if(pool != null){
+            throw new UnsupportedOperationException("Parallel dispatch is not supported by this dispatcher");
+        }
+    }
+    
+    /**
+     * Enables caching the results of this dispatcher, replacing the current cache if there is one.
+     *
+     * Only use this for pure queries where the result depends on nothing but {@link Event#getOriginalValue()}, a cached
+     * dispatch completes the event with the stored value and cancellation without calling any handler. Roughly the
+     * least recently used results are dropped once the cache is full and the whole cache is dropped whenever the
+     * handlers change.
+     *
+     * @param capacity The maximum amount of results to keep
+     *
+     * @return The cache, for statistics and manual invalidation
+     *
+     * @throws IllegalArgumentException If the capacity is not positive
+     * @throws UnsupportedOperationException If this dispatcher does not support result caches, the default
+     */
+    @NotNull
+    default ResultCache enableResultCache(int capacity){
+        throw new UnsupportedOperationException("Result caches are not supported by this dispatcher");
+    }
+    
+    /**
+     * Freezes this dispatcher, the handlers and settings can not be changed anymore afterwards.
+     *
+     * The returned dispatcher has the consumer compiled in and dispatches without any locks, keep it in a final field
+     * so the JIT can fold the whole handler chain. This dispatcher keeps working as well. Freezing again is allowed and
+     * returns a dispatcher with the same handlers.
+     *
+     * A handler that is registered or removed while the dispatcher is being frozen is either part of the frozen
+     * dispatcher or rejected with an {@link IllegalStateException}, it is never silently lost.
+     *
+     * @return The frozen dispatcher
+     *
+     * @throws UnsupportedOperationException If this dispatcher can not be frozen, the default
+     */
+    @NotNull
+    default EventDispatcher<T, E> freeze(){
+        throw new UnsupportedOperationException("Freezing is not supported by this dispatcher");
+    }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import net.gudenau.events.impl.EventJournalImpl;
+import net.gudenau.events.impl.JournalReplayer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An append-only log of dispatched {@link Event}s that can be replayed through an {@link EventBus}.
+ *
+ * The journal is a directory of memory-mapped segments of a fixed size. Every record holds the event as it was before
+ * it was dispatched, when it was dispatched, if it was canceled and optionally its result. Because the segments are
+ * mapped, records survive the JVM crashing but not the host going down.
+ *
+ * A journal records nothing until it is attached to a bus with {@link EventBus#setJournal(EventJournal)} and only
+ * records the types that where passed to {@link #record(Class, EventCodec)}. Once closed it stops recording, buses it
+ * is still attached to dispatch as if it was detached.
+ */
+public interface EventJournal extends Closeable{
+    /**
+     * Opens a journal for appending, creating the directory if required. An existing journal is appended to.
+     *
+     * @param directory The directory of the journal
+     * @param segmentSize The size of a single segment in bytes, this limits the size of a single record
+     *
+     * @return The opened journal
+     *
+     * @throws IOException If the journal could not be opened
+     * @throws IllegalArgumentException If the segment size is invalid
+     */
+    @NotNull
+    static EventJournal open(@NotNull Path directory, int segmentSize) throws IOException{
+        return EventJournalImpl.open(directory, segmentSize);
+    }
+    
+    /**
+     * Creates a replayer for an existing journal.
+     *
+     * @param directory The directory of the journal
+     *
+     * @return The replayer
+     */
+    @NotNull
+    static Replayer replayer(@NotNull Path directory){
+        return new JournalReplayer(directory);
+    }
+    
+    /**
+     * Records every dispatch of an {@link Event} type, the result is not stored.
+     *
+     * @param type The type of the event
+     * @param codec The codec of the event
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @throws IllegalStateException If the type, or a type with a colliding id, is already recorded
+     */
+    <T, E extends Event<T>> void record(@NotNull Class<E> type, @NotNull EventCodec<E> codec);
+    
+    /**
+     * Records every dispatch of an {@link Event} type including its result.
+     *
+     * @param type The type of the event
+     * @param codec The codec of the event
+     * @param resultCodec The codec of the result
+     * @param <T> The result type of the event
+     * @param <E> The type of the event
+     *
+     * @throws IllegalStateException If the type, or a type with a colliding id, is already recorded
+     */
+    <T, E extends Event<T>> void record(@NotNull Class<E> type, @NotNull EventCodec<E> codec, @NotNull ValueCodec<T> resultCodec);
+    
+    /**
+     * How a {@link Replayer} spaces out events.
+     */
+    enum Pacing{
+        /**
+         * Dispatch events as fast as possible.
+         */
+        FULL_SPEED,
+        /**
+         * Dispatch events with the same spacing they where recorded with.
+         */
+        RECORDED
+    }
+    
+    /**
+     * Streams a journal back through an {@link EventBus}.
+     */
+    interface Replayer{
+        /**
+         * Binds a codec to an {@link Event} type, records of unbound types are skipped.
+         *
+         * @param type The type of the event
+         * @param codec The codec of the event
+         * @param <T> The result type of the event
+         * @param <E> The type of the event
+         *
+         * @throws IllegalStateException If the type, or a type with a colliding id, was already bound
+         */
+        <T, E extends Event<T>> void bind(@NotNull Class<E> type, @NotNull EventCodec<E> codec);
+        
+        /**
+         * Binds a codec to an {@link Event} type, replayed results are compared to the recorded ones.
+         *
+         * @param type The type of the event
+         * @param codec The codec of the event
+         * @param resultCodec The codec of the result
+         * @param <T> The result type of the event
+         * @param <E> The type of the event
+         *
+         * @throws IllegalStateException If the type, or a type with a colliding id, was already bound
+         */
+        <T, E extends Event<T>> void bind(@NotNull Class<E> type, @NotNull EventCodec<E> codec, @NotNull ValueCodec<T> resultCodec);
+        
+        /**
+         * Dispatches every bound record of the journal to a bus, in the order they where recorded.
+         *
+         * @param bus The bus to dispatch to
+         * @param pacing How to space out the events
+         *
+         * @return The statistics of the replay
+         *
+         * @throws IOException If the journal could not be read
+         */
+        @NotNull
+        ReplayResult replay(@NotNull EventBus bus, @NotNull Pacing pacing) throws IOException;
+    }
+    
+    /**
+     * The statistics of a replay.
+     */
+    final class ReplayResult{
+        private final long events;
+        private final long skipped;
+        private final long mismatches;
+        private final long duration;
+        
+        public ReplayResult(long events, long skipped, long mismatches, long duration){
+            this.events = events;
+            this.skipped = skipped;
+            this.mismatches = mismatches;
+            this.duration = duration;
+        }
+        
+        /**
+         * Gets the amount of events that where dispatched.
+         *
+         * @return The amount of events
+         */
+        public long getEvents(){
+            return events;
+        }
+        
+        /**
+         * Gets the amount of records that where skipped because their type was not bound.
+         *
+         * @return The amount of skipped records
+         */
+        public long getSkipped(){
+            return skipped;
+        }
+        
+        /**
+         * Gets the amount of events whose cancellation state or result differed from the recording.
+         *
+         * Results are only compared for types that where recorded and bound with a result codec.
+         *
+         * @return The amount of mismatches
+         */
+        public long getMismatches(){
+            return mismatches;
+        }
+        
+        /**
+         * Gets how long the replay took.
+         *
+         * @return The duration in nanoseconds
+         */
+        public long getDuration(){
+            return duration;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events;
+
+import net.gudenau.events.impl.HandlerGroupImpl;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A named group of handlers that can be turned on and off at runtime, like handlers behind a feature flag.
+ *
+ * The enabled state of every group lives in a single global bitmask that the generated consumers check before calling a
+ * grouped handler. Toggling a group is one atomic write, the dispatchers do not regenerate anything and take no locks.
+ *
+ * Groups are global to the JVM, a name is the same group on every bus and dispatcher and for every library that uses
+ * gudEvents. Prefix names with something unique to the caller, like "mylibrary:debug-overlay", so unrelated code does
+ * not toggle each others handlers. There can be at most 63 groups and they are never freed, so create a fixed set of
+ * them up front instead of one per object or per bus.
+ */
+public interface HandlerGroup{
+    /**
+     * Gets the group with a name, creating it if required. New groups are enabled.
+     *
+     * @param name The name of the group
+     *
+     * @return The group
+     *
+     * @throws IllegalStateException If all 63 groups of the JVM are taken
+     */
+    @NotNull
+    static HandlerGroup named(@NotNull String name){
+        return HandlerGroupImpl.named(name);
+    }
+    
+    /**
+     * Gets the name of this group.
+     *
+     * @return The name
+     */
+    @NotNull
+    String getName();
+    
+    /**
+     * Checks if the handlers in this group are called.
+     *
+     * @return True if the group is enabled
+     */
+    boolean isEnabled();
+    
+    /**
+     * Enables or disables the handlers in this group for every dispatcher, the change is seen by the next dispatch.
+     *
+     * @param enabled True to call the handlers, false to skip them
+     */
+    void setEnabled(boolean enabled);
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events;
+
+/**
+ * A cache of {@link Event} results, see {@link EventDispatcher#enableResultCache(int)}.
+ *
+ * The statistics are kept with striped counters, reading them is not an atomic snapshot.
+ */
+public interface ResultCache{
+    /**
+     * Gets the amount of dispatches that where answered from the cache.
+     *
+     * @return The hit count
+     */
+    long getHitCount();
+    
+    /**
+     * Gets the amount of dispatches that had to run the handlers.
+     *
+     * @return The miss count
+     */
+    long getMissCount();
+    
+    /**
+     * Gets the amount of results that where dropped to stay under the capacity.
+     *
+     * @return The eviction count
+     */
+    long getEvictionCount();
+    
+    /**
+     * Gets the amount of times the cache was cleared because the handlers changed or {@link #invalidate()} was called.
+     *
+     * @return The invalidation count
+     */
+    long getInvalidationCount();
+    
+    /**
+     * Gets the amount of results that are currently cached.
+     *
+     * @return The size of the cache
+     */
+    int getSize();
+    
+    /**
+     * Gets the maximum amount of results this cache holds.
+     *
+     * @return The capacity of the cache
+     */
+    int getCapacity();
+    
+    /**
+     * Drops every cached result, for when something the handlers depend on changed.
+     */
+    void invalidate();
+}
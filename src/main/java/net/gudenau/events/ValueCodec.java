@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events;
+
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Converts the result values of {@link Event}s to and from a binary form.
+ *
+ * @param <T> The type of the value
+ */
+public interface ValueCodec<T>{
+    /**
+     * Writes a value into a buffer, starting at the current position of the buffer.
+     *
+     * @param value The value to write
+     * @param buffer The buffer to write to
+     *
+     * @throws java.nio.BufferOverflowException If the value does not fit in the buffer
+     */
+    void encode(@NotNull T value, @NotNull ByteBuffer buffer);
+    
+    /**
+     * Reads a value from a buffer, starting at the current position of the buffer.
+     *
+     * @param buffer The buffer to read from
+     *
+     * @return The read value
+     */
+    @NotNull
+    T decode(@NotNull ByteBuffer buffer);
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.HandlerGroup;
+import net.gudenau.events.ResultCache;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The dispatcher that {@link EventBusImpl} keeps for a registered type, this is also the handle returned by
+ * {@link EventBusImpl#dispatcherFor(Class)}.
+ *
+ * Handlers go straight to the real dispatcher, dispatches go through the journal of the bus when one is attached.
+ * There is no other state in here, so a handle can never get out of sync with the bus.
+ */
+final class BusDispatcher<T, E extends Event<T>> implements EventDispatcher<T, E>{
+    private final EventBusImpl bus;
+    private final Class<E> type;
+    private final EventDispatcher<T, E> dispatcher;
+    
+    BusDispatcher(EventBusImpl bus, Class<E> type, EventDispatcher<T, E> dispatcher){
+        this.bus = bus;
+        this.type = type;
+        this.dispatcher = dispatcher;
+    }
+    
+    @Override
+    public void registerHandler(@NotNull Consumer<E> handler){
+        dispatcher.registerHandler(handler);
+    }
+    
+    @Override
+    public void registerHandler(@NotNull HandlerGroup group, @NotNull Consumer<E> handler){
+        dispatcher.registerHandler(group, handler);
+    }
+    
+    @Override
+    public void removeHandler(@NotNull Consumer<E> handler){
+        dispatcher.removeHandler(handler);
+    }
+    
+    @Override
+    public Optional<T> dispatchEvent(@NotNull E event){
+        EventJournalImpl journal = bus.getJournal();
+        if(journal != null){
+            return journal.dispatch(dispatcher, event);
+        }
+        return dispatcher.dispatchEvent(event);
+    }
+    
+    @Override
+    public boolean hasHandlers(){
+        return dispatcher.hasHandlers();
+    }
+    
+    @Override
+    public Optional<T> dispatchEvent(@NotNull Supplier<E> factory){
+        return dispatcher.hasHandlers() ? dispatchEvent(factory.get()) : Optional.empty();
+    }
+    
+    @Override
+    public <V> Optional<T> dispatchEvent(@NotNull Function<? super V, E> factory, V value){
+        return dispatcher.hasHandlers() ? dispatchEvent(factory.apply(value)) : Optional.empty();
+    }
+    
+    @Override
+    public void dispatchEvents(@NotNull List<E> events){
+        EventJournalImpl journal = bus.getJournal();
+        if(journal != null && journal.records(type)){
+            for(E event : events){
+                journal.dispatch(dispatcher, event);
+            }
+        }else{
+            dispatcher.dispatchEvents(events);
+        }
+    }
+    
+    @Override
+    public void setParallel(@Nullable ForkJoinPool pool){
+        dispatcher.setParallel(pool);
+    }
+    
+    @NotNull
+    @Override
+    public ResultCache enableResultCache(int capacity){
+        return dispatcher.enableResultCache(capacity);
+    }
+    
+    @NotNull
+    @Override
+    public BusDispatcher<T, E> freeze(){
+        // The type is known here, so non-cancelable events get the consumer without the checks.
+        boolean cancelable = !Event.NonCancelable.class.isAssignableFrom(type);
+        EventDispatcher<T, E> frozen;
+        if(dispatcher instanceof EventDispatcherImpl){
+            frozen = ((EventDispatcherImpl<T, E>)dispatcher).freeze(cancelable);
+        }else{
+            frozen = dispatcher.freeze();
+        }
+        return new BusDispatcher<>(bus, type, frozen);
+    }
+    
+    @NotNull
+    Class<E> getType(){
+        return type;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The layout of an {@link net.gudenau.events.EventChannel} ring file.
+ *
+ * Header:
+ *  - int magic
+ *  - int version
+ *  - int slot count
+ *  - int slot size
+ *  - long sequence of the last published event
+ *
+ * Slot:
+ *  - long sequence, {@link #SEQUENCE_BUSY} while the writer is filling the slot
+ *  - int type id
+ *  - int payload length
+ *  - payload
+ *
+ * Sequences start at 1, event n lives in slot (n - 1) % slot count.
+ */
+final class ChannelLayout{
+    static final int MAGIC = 0x67457643; // gEvC
+    static final int VERSION = 1;
+    
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SLOT_COUNT_OFFSET = 8;
+    static final int SLOT_SIZE_OFFSET = 12;
+    static final int HEAD_OFFSET = 16;
+    static final int HEADER_SIZE = 64;
+    
+    static final int SLOT_SEQUENCE_OFFSET = 0;
+    static final int SLOT_TYPE_OFFSET = 8;
+    static final int SLOT_LENGTH_OFFSET = 12;
+    static final int SLOT_PAYLOAD_OFFSET = 16;
+    
+    static final long SEQUENCE_BUSY = -1;
+    
+    private ChannelLayout(){}
+    
+    static ByteOrder order(){
+        // Both sides live on the same host
+        return ByteOrder.nativeOrder();
+    }
+    
+    static long fileSize(int slotCount, int slotSize){
+        if(slotCount <= 0){
+            throw new IllegalArgumentException("Slot count must be positive");
+        }
+        if(slotSize <= SLOT_PAYLOAD_OFFSET || (slotSize & 7) != 0){
+            throw new IllegalArgumentException("Slot size must be a multiple of 8 larger than " + SLOT_PAYLOAD_OFFSET);
+        }
+        long size = HEADER_SIZE + (long)slotCount * slotSize;
+        if(size > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Ring file would be larger than 2GiB");
+        }
+        return size;
+    }
+    
+    static int slotOffset(long sequence, int slotCount, int slotSize){
+        return HEADER_SIZE + (int)((sequence - 1) % slotCount) * slotSize;
+    }
+    
+    static boolean isValid(ByteBuffer buffer){
+        if(buffer.capacity() < HEADER_SIZE){
+            return false;
+        }
+        if(buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION){
+            return false;
+        }
+        try{
+            return fileSize(buffer.getInt(SLOT_COUNT_OFFSET), buffer.getInt(SLOT_SIZE_OFFSET)) <= buffer.capacity();
+        }catch(IllegalArgumentException e){
+            return false;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventDispatcher;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Holds the latest staged event for every key of a coalescable event type.
+ *
+ * Producers merge into a concurrent map, a flush removes every entry and hands it to the dispatcher. An entry that is
+ * replaced while a flush is running is left alone and delivered on the next flush.
+ *
+ * The amount of staged keys is tracked separately, a new key has to reserve a slot before it is added so concurrent
+ * producers can never push the stage over its capacity.
+ */
+final class CoalescingStage<T, E extends Event<T>>{
+    private static final Object NULL_KEY = new Object();
+    
+    private final Map<Object, E> staged = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final EventDispatcher<T, E> dispatcher;
+    private final Function<? super E, ?> keyFunction;
+    private final BinaryOperator<E> merger;
+    private final int capacity;
+    
+    CoalescingStage(EventDispatcher<T, E> dispatcher, Function<? super E, ?> keyFunction, BinaryOperator<E> merger, int capacity){
+        this.dispatcher = dispatcher;
+        this.keyFunction = keyFunction;
+        this.merger = merger;
+        this.capacity = capacity;
+    }
+    
+    /**
+     * Stages an event, merging it with the event already staged under the same key.
+     *
+     * If the stage is full and the key is new the event is dispatched right away instead of growing the stage.
+     *
+     * @param event The event to stage
+     *
+     * @throws NullPointerException If the merger returned null, the staged event and its slot are kept
+     */
+    void stage(@NotNull E event){
+        Object key = keyFunction.apply(event);
+        if(key == null){
+            key = NULL_KEY;
+        }
+        // Runs atomically for the key, a null result means the key was new and there was no free slot.
+        E result = staged.compute(key, (k, current)->{
+            if(current != null){
+                // A null would remove the key without releasing its slot.
+                E merged = merger.apply(current, event);
+                if(merged == null){
+                    throw new NullPointerException("Merger " + merger + " returned null");
+                }
+                return merged;
+            }
+            return reserve() ? event : null;
+        });
+        if(result == null){
+            dispatcher.dispatchEvent(event);
+        }
+    }
+    
+    /**
+     * Reserves a slot for a new key.
+     *
+     * @return True if there was a free slot
+     */
+    private boolean reserve(){
+        int current;
+        do{
+            current = size.get();
+            if(current >= capacity){
+                return false;
+            }
+        }while(!size.compareAndSet(current, current + 1));
+        return true;
+    }
+    
+    /**
+     * Dispatches every staged event.
+     *
+     * @return The amount of events that where dispatched
+     */
+    int flush(){
+        int count = 0;
+        for(Iterator<Map.Entry<Object, E>> iterator = staged.entrySet().iterator(); iterator.hasNext();){
+            Map.Entry<Object, E> entry = iterator.next();
+            E event = entry.getValue();
+            if(staged.remove(entry.getKey(), event)){
+                size.decrementAndGet();
+                dispatcher.dispatchEvent(event);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.gudenau.events.Event;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates and caches a {@link GeneratedCodec} for every class that gets encoded.
+ *
+ * A generated codec reads the fields of an object one by one straight into a {@link java.nio.ByteBuffer}, the field
+ * offsets are embedded into the code as constants. The fields of a class are written after the fields of its super
+ * class, sorted by name, so every JVM agrees on the layout. Static, transient and synthetic fields are skipped.
+ *
+ * Supported fields are primitives, strings, enums, anything that is not a concrete class (written with its runtime
+ * type) and any other class whose fields are supported. Concrete JDK classes other than the boxed primitives are
+ * rejected, their fields are implementation details that differ between releases.
+ */
+public final class CodecGenerator{
+    private static final MapLocker<Class<?>, GeneratedCodec> CODECS = MapLocker.create();
+    private static final ThreadLocal<Set<Class<?>>> GENERATING = ThreadLocal.withInitial(Utils::createSet);
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    
+    private static final String SUPPORT = "net/gudenau/events/impl/CodecSupport";
+    private static final String SUPER = "net/gudenau/events/impl/GeneratedCodec";
+    private static final String BUFFER = "java/nio/ByteBuffer";
+    private static final String BUFFER_DESC = "Ljava/nio/ByteBuffer;";
+    private static final String CODEC_DESC = "L" + SUPER + ";";
+    
+    private CodecGenerator(){}
+    
+    /**
+     * Gets the codec of a class, generating it if required.
+     *
+     * @param type The class
+     *
+     * @return The codec of the class
+     *
+     * @throws IllegalArgumentException If the class or one of its fields is not supported
+     * @throws UnsupportedOperationException If the runtime does not provide Unsafe
+     */
+    @NotNull
+    public static GeneratedCodec getCodec(@NotNull Class<?> type){
+        GeneratedCodec codec = CODECS.get(type);
+        if(codec != null){
+            return codec;
+        }
+        if(!CodecSupport.isAvailable()){
+            throw new UnsupportedOperationException("Generated codecs require sun.misc.Unsafe");
+        }
+        
+        // Nested codecs are generated first, so this can not happen inside of the map lock.
+        Set<Class<?>> generating = GENERATING.get();
+        if(!generating.add(type)){
+            throw new IllegalArgumentException("Can not generate a codec for recursive type " + type.getName());
+        }
+        try{
+            codec = generate(type);
+        }finally{
+            generating.remove(type);
+        }
+        GeneratedCodec existing = CODECS.putIfAbsent(type, codec);
+        return existing == null ? codec : existing;
+    }
+    
+    private static GeneratedCodec generate(Class<?> type){
+        if(type.isArray() || type.isInterface() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers())){
+            throw new IllegalArgumentException("Can not generate a codec for " + type.getName());
+        }
+        if(isJdkClass(type)){
+            throw new IllegalArgumentException("JDK classes are not supported by generated codecs: " + type.getName());
+        }
+        
+        boolean event = Event.class.isAssignableFrom(type);
+        List<CodecField> fields = new ArrayList<>();
+        List<Object> extras = new ArrayList<>();
+        collectFields(type, event ? Event.class : Object.class, fields, extras);
+        
+        String className = "net/gudenau/events/gen/Codec" + COUNTER.getAndIncrement() + "$" + type.getSimpleName();
+        
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC, className, null, SUPER, null);
+        
+        writer.visitField(ACC_PRIVATE | ACC_FINAL, "type", "Ljava/lang/Class;", null, null);
+        for(CodecField field : fields){
+            if(field.extra != -1){
+                writer.visitField(ACC_PRIVATE | ACC_FINAL, field.extraName(), field.kind.extraDescriptor, null, null);
+            }
+        }
+        
+        { // <init>(Class, Object[])
+            MethodVisitor method = writer.visitMethod(ACC_PUBLIC, "<init>", "(Ljava/lang/Class;[Ljava/lang/Object;)V", null, null);
+            method.visitCode();
+            method.visitVarInsn(ALOAD, 0);
+            method.visitMethodInsn(INVOKESPECIAL, SUPER, "<init>", "()V", false);
+            method.visitVarInsn(ALOAD, 0);
+            method.visitVarInsn(ALOAD, 1);
+            method.visitFieldInsn(PUTFIELD, className, "type", "Ljava/lang/Class;");
+            for(CodecField field : fields){
+                if(field.extra != -1){
+                    method.visitVarInsn(ALOAD, 0);
+                    method.visitVarInsn(ALOAD, 2);
+                    method.visitLdcInsn(field.extra);
+                    method.visitInsn(AALOAD);
+                    method.visitTypeInsn(CHECKCAST, Type.getType(field.kind.extraDescriptor).getInternalName());
+                    method.visitFieldInsn(PUTFIELD, className, field.extraName(), field.kind.extraDescriptor);
+                }
+            }
+            method.visitInsn(RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        
+        { // write(Object, ByteBuffer)
+            MethodVisitor method = writer.visitMethod(ACC_PUBLIC | ACC_FINAL, "write", "(Ljava/lang/Object;" + BUFFER_DESC + ")V", null, null);
+            method.visitCode();
+            for(CodecField field : fields){
+                field.kind.write(method, className, field);
+            }
+            if(event){
+                method.visitVarInsn(ALOAD, 2);
+                method.visitVarInsn(ALOAD, 1);
+                method.visitMethodInsn(INVOKESTATIC, SUPPORT, "writeEventState", "(" + BUFFER_DESC + "Ljava/lang/Object;)V", false);
+            }
+            method.visitInsn(RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        
+        { // read(ByteBuffer)
+            MethodVisitor method = writer.visitMethod(ACC_PUBLIC | ACC_FINAL, "read", "(" + BUFFER_DESC + ")Ljava/lang/Object;", null, null);
+            method.visitCode();
+            method.visitVarInsn(ALOAD, 0);
+            method.visitFieldInsn(GETFIELD, className, "type", "Ljava/lang/Class;");
+            method.visitMethodInsn(INVOKESTATIC, SUPPORT, "allocate", "(Ljava/lang/Class;)Ljava/lang/Object;", false);
+            method.visitVarInsn(ASTORE, 2);
+            for(CodecField field : fields){
+                field.kind.read(method, className, field);
+            }
+            if(event){
+                method.visitVarInsn(ALOAD, 1);
+                method.visitVarInsn(ALOAD, 2);
+                method.visitMethodInsn(INVOKESTATIC, SUPPORT, "readEventState", "(" + BUFFER_DESC + "Ljava/lang/Object;)V", false);
+            }
+            method.visitVarInsn(ALOAD, 2);
+            method.visitInsn(ARETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        
+        writer.visitEnd();
+        byte[] bytecode = writer.toByteArray();
+        
+        ClassLoader parent = type.getClassLoader() == null ? CodecGenerator.class.getClassLoader() : type.getClassLoader();
+        CodecClassLoader loader = AccessController.doPrivileged((PrivilegedAction<CodecClassLoader>)()->new CodecClassLoader(parent));
+        try{
+            Class<?> klass = loader.define(className.replace('/', '.'), bytecode);
+            return (GeneratedCodec)klass.getConstructor(Class.class, Object[].class).newInstance(type, extras.toArray());
+        }catch(ReflectiveOperationException e){
+            throw new RuntimeException("Failed to create codec for " + type.getName(), e);
+        }
+    }
+    
+    private static void collectFields(Class<?> type, Class<?> stop, List<CodecField> fields, List<Object> extras){
+        if(type == stop || type == Object.class){
+            return;
+        }
+        collectFields(type.getSuperclass(), stop, fields, extras);
+        
+        Field[] declared = type.getDeclaredFields();
+        Arrays.sort(declared, Comparator.comparing(Field::getName));
+        for(Field field : declared){
+            int modifiers = field.getModifiers();
+            if(Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()){
+                continue;
+            }
+            Class<?> fieldType = field.getType();
+            Kind kind = Kind.of(fieldType);
+            int extra = -1;
+            if(kind == Kind.ENUM){
+                extra = extras.size();
+                extras.add(fieldType.getEnumConstants());
+            }else if(kind == Kind.NESTED){
+                extra = extras.size();
+                extras.add(getCodec(fieldType));
+            }else if(kind == Kind.VALUE){
+                extra = extras.size();
+                extras.add(fieldType);
+            }
+            fields.add(new CodecField(CodecSupport.offset(field), kind, extra));
+        }
+    }
+    
+    private static final class CodecField{
+        private final long offset;
+        private final Kind kind;
+        private final int extra;
+        
+        private CodecField(long offset, Kind kind, int extra){
+            this.offset = offset;
+            this.kind = kind;
+            this.extra = extra;
+        }
+        
+        private String extraName(){
+            return "extra" + extra;
+        }
+    }
+    
+    private static boolean isJdkClass(Class<?> type){
+        String name = type.getName();
+        return type.getClassLoader() == null || name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.") || name.startsWith("sun.");
+    }
+    
+    private static boolean isBoxed(Class<?> type){
+        return type == Boolean.class || type == Byte.class || type == Short.class || type == Character.class ||
+            type == Integer.class || type == Long.class || type == Float.class || type == Double.class;
+    }
+    
+    /**
+     * How a field is written and read.
+     */
+    private enum Kind{
+        BOOLEAN("Z", null, "writeBoolean", "readBoolean"),
+        BYTE("B", null, "put", "get"),
+        SHORT("S", null, "putShort", "getShort"),
+        CHAR("C", null, "putChar", "getChar"),
+        INT("I", null, "putInt", "getInt"),
+        LONG("J", null, "putLong", "getLong"),
+        FLOAT("F", null, "putFloat", "getFloat"),
+        DOUBLE("D", null, "putDouble", "getDouble"),
+        STRING("Ljava/lang/String;", null, "writeString", "readString"),
+        ENUM("Ljava/lang/Object;", "[Ljava/lang/Object;", "writeEnum", "readEnum"),
+        VALUE("Ljava/lang/Object;", "Ljava/lang/Class;", "writeValue", "readValue"),
+        NESTED("Ljava/lang/Object;", CODEC_DESC, "writeNested", "readNested");
+        
+        private final String descriptor;
+        private final String extraDescriptor;
+        private final String writer;
+        private final String reader;
+        
+        Kind(String descriptor, String extraDescriptor, String writer, String reader){
+            this.descriptor = descriptor;
+            this.extraDescriptor = extraDescriptor;
+            this.writer = writer;
+            this.reader = reader;
+        }
+        
+        static Kind of(Class<?> type){
+            if(type.isPrimitive()){
+                switch(Type.getDescriptor(type)){
+                    case "Z": return BOOLEAN;
+                    case "B": return BYTE;
+                    case "S": return SHORT;
+                    case "C": return CHAR;
+                    case "I": return INT;
+                    case "J": return LONG;
+                    case "F": return FLOAT;
+                    case "D": return DOUBLE;
+                }
+            }
+            if(type == String.class){
+                return STRING;
+            }
+            if(type.isEnum()){
+                return ENUM;
+            }
+            if(type.isArray()){
+                throw new IllegalArgumentException("Arrays are not supported by generated codecs: " + type.getName());
+            }
+            if(type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type == Object.class || isBoxed(type)){
+                return VALUE;
+            }
+            if(isJdkClass(type)){
+                throw new IllegalArgumentException("JDK classes are not supported by generated codecs: " + type.getName());
+            }
+            return NESTED;
+        }
+        
+        private boolean isPrimitive(){
+            return descriptor.length() == 1;
+        }
+        
+        /**
+         * The accessor of the field in {@link CodecSupport}, everything that is not a primitive is an Object.
+         */
+        private String accessor(){
+            if(!isPrimitive()){
+                return "Object";
+            }
+            return Type.getType(descriptor).getClassName().substring(0, 1).toUpperCase() + Type.getType(descriptor).getClassName().substring(1);
+        }
+        
+        private String fieldDescriptor(){
+            return isPrimitive() ? descriptor : "Ljava/lang/Object;";
+        }
+        
+        /**
+         * Emits the code that writes this field, locals: 0 this, 1 object, 2 buffer.
+         */
+        void write(MethodVisitor method, String className, CodecField field){
+            method.visitVarInsn(ALOAD, 2);
+            if(this == NESTED){
+                method.visitVarInsn(ALOAD, 0);
+                method.visitFieldInsn(GETFIELD, className, field.extraName(), extraDescriptor);
+            }
+            method.visitVarInsn(ALOAD, 1);
+            method.visitLdcInsn(field.offset);
+            method.visitMethodInsn(INVOKESTATIC, SUPPORT, "get" + accessor(), "(Ljava/lang/Object;J)" + fieldDescriptor(), false);
+            if(this == STRING){
+                method.visitTypeInsn(CHECKCAST, "java/lang/String");
+            }
+            
+            if(isPrimitive() && this != BOOLEAN){
+                method.visitMethodInsn(INVOKEVIRTUAL, BUFFER, writer, "(" + descriptor + ")" + BUFFER_DESC, false);
+                method.visitInsn(POP);
+            }else if(this == NESTED){
+                method.visitMethodInsn(INVOKESTATIC, SUPPORT, writer, "(" + BUFFER_DESC + CODEC_DESC + "Ljava/lang/Object;)V", false);
+            }else{
+                method.visitMethodInsn(INVOKESTATIC, SUPPORT, writer, "(" + BUFFER_DESC + descriptor + ")V", false);
+            }
+        }
+        
+        /**
+         * Emits the code that reads this field, locals: 0 this, 1 buffer, 2 object.
+         */
+        void read(MethodVisitor method, String className, CodecField field){
+            method.visitVarInsn(ALOAD, 2);
+            method.visitLdcInsn(field.offset);
+            method.visitVarInsn(ALOAD, 1);
+            
+            if(isPrimitive() && this != BOOLEAN){
+                method.visitMethodInsn(INVOKEVIRTUAL, BUFFER, reader, "()" + descriptor, false);
+            }else if(this == ENUM || this == NESTED){
+                method.visitVarInsn(ALOAD, 0);
+                method.visitFieldInsn(GETFIELD, className, field.extraName(), extraDescriptor);
+                method.visitMethodInsn(INVOKESTATIC, SUPPORT, reader, "(" + BUFFER_DESC + extraDescriptor + ")" + descriptor, false);
+            }else if(this == VALUE){
+                method.visitVarInsn(ALOAD, 0);
+                method.visitFieldInsn(GETFIELD, className, "type", "Ljava/lang/Class;");
+                method.visitVarInsn(ALOAD, 0);
+                method.visitFieldInsn(GETFIELD, className, field.extraName(), extraDescriptor);
+                method.visitMethodInsn(INVOKESTATIC, SUPPORT, reader, "(" + BUFFER_DESC + "Ljava/lang/Class;" + extraDescriptor + ")" + descriptor, false);
+            }else{
+                method.visitMethodInsn(INVOKESTATIC, SUPPORT, reader, "(" + BUFFER_DESC + ")" + descriptor, false);
+            }
+            
+            method.visitMethodInsn(INVOKESTATIC, SUPPORT, "put" + accessor(), "(Ljava/lang/Object;J" + fieldDescriptor() + ")V", false);
+        }
+    }
+    
+    /**
+     * Loads a single generated codec, the parent is the loader of the encoded class so the codec can see it.
+     */
+    private static final class CodecClassLoader extends ClassLoader{
+        private CodecClassLoader(ClassLoader parent){
+            super(parent);
+        }
+        
+        private Class<?> define(String name, byte[] bytecode){
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
@@ -0,0 +1,654 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import net.gudenau.events.Event;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The helpers that code generated by {@link CodecGenerator} calls into.
+ *
+ * Fields are accessed with Unsafe so private and final fields of any class can be read and written without going
+ * through reflection. The handles are constants, once the JIT gets to them they are as fast as plain field accesses.
+ */
+public final class CodecSupport{
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_BOOLEAN = 1;
+    private static final byte VALUE_BYTE = 2;
+    private static final byte VALUE_SHORT = 3;
+    private static final byte VALUE_CHARACTER = 4;
+    private static final byte VALUE_INTEGER = 5;
+    private static final byte VALUE_LONG = 6;
+    private static final byte VALUE_FLOAT = 7;
+    private static final byte VALUE_DOUBLE = 8;
+    private static final byte VALUE_STRING = 9;
+    private static final byte VALUE_ENUM = 10;
+    private static final byte VALUE_OBJECT = 11;
+    
+    /**
+     * Classes of runtime typed values, looked up by name from the loader of the class being decoded.
+     */
+    private static final ClassValue<ValueClasses> VALUE_CLASSES = new ClassValue<ValueClasses>(){
+        @Override
+        protected ValueClasses computeValue(Class<?> type){
+            return new ValueClasses(type);
+        }
+    };
+    
+    private static final boolean AVAILABLE;
+    
+    private static final MethodHandle Unsafe$objectFieldOffset;
+    private static final MethodHandle Unsafe$allocateInstance;
+    private static final MethodHandle Unsafe$getBoolean;
+    private static final MethodHandle Unsafe$putBoolean;
+    private static final MethodHandle Unsafe$getByte;
+    private static final MethodHandle Unsafe$putByte;
+    private static final MethodHandle Unsafe$getShort;
+    private static final MethodHandle Unsafe$putShort;
+    private static final MethodHandle Unsafe$getChar;
+    private static final MethodHandle Unsafe$putChar;
+    private static final MethodHandle Unsafe$getInt;
+    private static final MethodHandle Unsafe$putInt;
+    private static final MethodHandle Unsafe$getLong;
+    private static final MethodHandle Unsafe$putLong;
+    private static final MethodHandle Unsafe$getFloat;
+    private static final MethodHandle Unsafe$putFloat;
+    private static final MethodHandle Unsafe$getDouble;
+    private static final MethodHandle Unsafe$putDouble;
+    private static final MethodHandle Unsafe$getObject;
+    private static final MethodHandle Unsafe$putObject;
+    
+    private static final long Event$originalValue;
+    private static final long Event$value;
+    private static final long Event$canceled;
+    
+    static{
+        Object unsafe = Utils.findUnsafe().orElse(null);
+        AVAILABLE = unsafe != null;
+        Unsafe$objectFieldOffset = find(unsafe, "objectFieldOffset", long.class, Field.class);
+        Unsafe$allocateInstance = find(unsafe, "allocateInstance", Object.class, Class.class);
+        Unsafe$getBoolean = find(unsafe, "getBoolean", boolean.class, Object.class, long.class);
+        Unsafe$putBoolean = find(unsafe, "putBoolean", void.class, Object.class, long.class, boolean.class);
+        Unsafe$getByte = find(unsafe, "getByte", byte.class, Object.class, long.class);
+        Unsafe$putByte = find(unsafe, "putByte", void.class, Object.class, long.class, byte.class);
+        Unsafe$getShort = find(unsafe, "getShort", short.class, Object.class, long.class);
+        Unsafe$putShort = find(unsafe, "putShort", void.class, Object.class, long.class, short.class);
+        Unsafe$getChar = find(unsafe, "getChar", char.class, Object.class, long.class);
+        Unsafe$putChar = find(unsafe, "putChar", void.class, Object.class, long.class, char.class);
+        Unsafe$getInt = find(unsafe, "getInt", int.class, Object.class, long.class);
+        Unsafe$putInt = find(unsafe, "putInt", void.class, Object.class, long.class, int.class);
+        Unsafe$getLong = find(unsafe, "getLong", long.class, Object.class, long.class);
+        Unsafe$putLong = find(unsafe, "putLong", void.class, Object.class, long.class, long.class);
+        Unsafe$getFloat = find(unsafe, "getFloat", float.class, Object.class, long.class);
+        Unsafe$putFloat = find(unsafe, "putFloat", void.class, Object.class, long.class, float.class);
+        Unsafe$getDouble = find(unsafe, "getDouble", double.class, Object.class, long.class);
+        Unsafe$putDouble = find(unsafe, "putDouble", void.class, Object.class, long.class, double.class);
+        Unsafe$getObject = find(unsafe, "getObject", Object.class, Object.class, long.class);
+        Unsafe$putObject = find(unsafe, "putObject", void.class, Object.class, long.class, Object.class);
+        
+        if(AVAILABLE){
+            Event$originalValue = offset(Event.class, "originalValue");
+            Event$value = offset(Event.class, "value");
+            Event$canceled = offset(Event.class, "canceled");
+        }else{
+            Event$originalValue = -1;
+            Event$value = -1;
+            Event$canceled = -1;
+        }
+    }
+    
+    private CodecSupport(){}
+    
+    private static MethodHandle find(Object unsafe, String name, Class<?> returnType, Class<?>... parameters){
+        if(unsafe == null){
+            return null;
+        }
+        try{
+            return MethodHandles.lookup()
+                .findVirtual(unsafe.getClass(), name, MethodType.methodType(returnType, parameters))
+                .bindTo(unsafe);
+        }catch(ReflectiveOperationException e){
+            throw new RuntimeException("Failed to find Unsafe." + name, e);
+        }
+    }
+    
+    private static long offset(Class<?> owner, String name){
+        try{
+            return offset(owner.getDeclaredField(name));
+        }catch(NoSuchFieldException e){
+            throw new RuntimeException("Failed to find field " + owner.getSimpleName() + "." + name, e);
+        }
+    }
+    
+    /**
+     * Checks if the runtime allows generated codecs.
+     *
+     * @return True if Unsafe is available
+     */
+    static boolean isAvailable(){
+        return AVAILABLE;
+    }
+    
+    /**
+     * Gets the offset of an instance field, generated codes embed these as constants.
+     *
+     * @param field The field
+     *
+     * @return The offset of the field
+     */
+    static long offset(Field field){
+        try{
+            return (long)Unsafe$objectFieldOffset.invokeExact(field);
+        }catch(Throwable throwable){
+            throw new IllegalArgumentException("Failed to get the offset of " + field, throwable);
+        }
+    }
+    
+    @NotNull
+    public static Object allocate(@NotNull Class<?> type){
+        try{
+            return (Object)Unsafe$allocateInstance.invokeExact(type);
+        }catch(Throwable throwable){
+            throw new RuntimeException("Failed to allocate " + type.getName(), throwable);
+        }
+    }
+    
+    public static boolean getBoolean(Object object, long offset){
+        try{
+            return (boolean)Unsafe$getBoolean.invokeExact(object, offset);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static void putBoolean(Object object, long offset, boolean value){
+        try{
+            Unsafe$putBoolean.invokeExact(object, offset, value);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static byte getByte(Object object, long offset){
+        try{
+            return (byte)Unsafe$getByte.invokeExact(object, offset);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static void putByte(Object object, long offset, byte value){
+        try{
+            Unsafe$putByte.invokeExact(object, offset, value);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static short getShort(Object object, long offset){
+        try{
+            return (short)Unsafe$getShort.invokeExact(object, offset);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static void putShort(Object object, long offset, short value){
+        try{
+            Unsafe$putShort.invokeExact(object, offset, value);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static char getChar(Object object, long offset){
+        try{
+            return (char)Unsafe$getChar.invokeExact(object, offset);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static void putChar(Object object, long offset, char value){
+        try{
+            Unsafe$putChar.invokeExact(object, offset, value);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static int getInt(Object object, long offset){
+        try{
+            return (int)Unsafe$getInt.invokeExact(object, offset);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static void putInt(Object object, long offset, int value){
+        try{
+            Unsafe$putInt.invokeExact(object, offset, value);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static long getLong(Object object, long offset){
+        try{
+            return (long)Unsafe$getLong.invokeExact(object, offset);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static void putLong(Object object, long offset, long value){
+        try{
+            Unsafe$putLong.invokeExact(object, offset, value);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static float getFloat(Object object, long offset){
+        try{
+            return (float)Unsafe$getFloat.invokeExact(object, offset);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static void putFloat(Object object, long offset, float value){
+        try{
+            Unsafe$putFloat.invokeExact(object, offset, value);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static double getDouble(Object object, long offset){
+        try{
+            return (double)Unsafe$getDouble.invokeExact(object, offset);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static void putDouble(Object object, long offset, double value){
+        try{
+            Unsafe$putDouble.invokeExact(object, offset, value);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static Object getObject(Object object, long offset){
+        try{
+            return (Object)Unsafe$getObject.invokeExact(object, offset);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static void putObject(Object object, long offset, Object value){
+        try{
+            Unsafe$putObject.invokeExact(object, offset, value);
+        }catch(Throwable throwable){
+            throw new RuntimeException(throwable);
+        }
+    }
+    
+    public static void writeBoolean(@NotNull ByteBuffer buffer, boolean value){
+        buffer.put(value ? (byte)1 : (byte)0);
+    }
+    
+    public static boolean readBoolean(@NotNull ByteBuffer buffer){
+        return buffer.get() != 0;
+    }
+    
+    /**
+     * Writes a string as its length followed by its chars, null is written as a length of -1.
+     *
+     * @param buffer The buffer to write to
+     * @param value The string to write
+     */
+    public static void writeString(@NotNull ByteBuffer buffer, @Nullable String value){
+        if(value == null){
+            buffer.putInt(-1);
+            return;
+        }
+        int length = value.length();
+        buffer.putInt(length);
+        for(int i = 0; i < length; i++){
+            buffer.putChar(value.charAt(i));
+        }
+    }
+    
+    @Nullable
+    public static String readString(@NotNull ByteBuffer buffer){
+        int length = buffer.getInt();
+        if(length == -1){
+            return null;
+        }
+        // The length may come from a torn slot, check it before it is used to allocate.
+        checkLength(buffer, length);
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++){
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+    
+    private static void checkLength(ByteBuffer buffer, int length){
+        if(length < 0 || length > buffer.remaining() / Character.BYTES){
+            throw new BufferUnderflowException();
+        }
+    }
+    
+    /**
+     * Writes an enum as its ordinal, null is written as -1.
+     *
+     * @param buffer The buffer to write to
+     * @param value The enum to write
+     */
+    public static void writeEnum(@NotNull ByteBuffer buffer, @Nullable Object value){
+        buffer.putInt(value == null ? -1 : ((Enum<?>)value).ordinal());
+    }
+    
+    @Nullable
+    public static Object readEnum(@NotNull ByteBuffer buffer, @NotNull Object[] constants){
+        int ordinal = buffer.getInt();
+        return ordinal == -1 ? null : constant(constants, ordinal);
+    }
+    
+    private static Object constant(Object[] constants, int ordinal){
+        if(ordinal < 0 || ordinal >= constants.length){
+            throw new IllegalStateException("Invalid enum ordinal " + ordinal + ", expected less than " + constants.length);
+        }
+        return constants[ordinal];
+    }
+    
+    /**
+     * Writes an object with a generated codec, prefixed with a byte that tells if it was null.
+     *
+     * @param buffer The buffer to write to
+     * @param codec The codec of the object
+     * @param value The object to write
+     */
+    public static void writeNested(@NotNull ByteBuffer buffer, @NotNull GeneratedCodec codec, @Nullable Object value){
+        if(value == null){
+            buffer.put((byte)0);
+        }else{
+            buffer.put((byte)1);
+            codec.write(value, buffer);
+        }
+    }
+    
+    @Nullable
+    public static Object readNested(@NotNull ByteBuffer buffer, @NotNull GeneratedCodec codec){
+        return buffer.get() == 0 ? null : codec.read(buffer);
+    }
+    
+    /**
+     * Writes an object of a type that is only known at runtime, this is used for fields that are not of a concrete
+     * type like the values of an {@link Event}.
+     *
+     * Supports null, boxed primitives, strings, enums and any object a codec can be generated for.
+     *
+     * @param buffer The buffer to write to
+     * @param value The value to write
+     *
+     * @throws IllegalArgumentException If the value is not supported
+     */
+    public static void writeValue(@NotNull ByteBuffer buffer, @Nullable Object value){
+        if(value == null){
+            buffer.put(VALUE_NULL);
+        }else if(value instanceof String){
+            buffer.put(VALUE_STRING);
+            writeString(buffer, (String)value);
+        }else if(value instanceof Integer){
+            buffer.put(VALUE_INTEGER).putInt((Integer)value);
+        }else if(value instanceof Long){
+            buffer.put(VALUE_LONG).putLong((Long)value);
+        }else if(value instanceof Boolean){
+            buffer.put(VALUE_BOOLEAN);
+            writeBoolean(buffer, (Boolean)value);
+        }else if(value instanceof Double){
+            buffer.put(VALUE_DOUBLE).putDouble((Double)value);
+        }else if(value instanceof Float){
+            buffer.put(VALUE_FLOAT).putFloat((Float)value);
+        }else if(value instanceof Byte){
+            buffer.put(VALUE_BYTE).put((Byte)value);
+        }else if(value instanceof Short){
+            buffer.put(VALUE_SHORT).putShort((Short)value);
+        }else if(value instanceof Character){
+            buffer.put(VALUE_CHARACTER).putChar((Character)value);
+        }else if(value instanceof Enum){
+            Enum<?> constant = (Enum<?>)value;
+            buffer.put(VALUE_ENUM);
+            writeString(buffer, constant.getDeclaringClass().getName());
+            buffer.putInt(constant.ordinal());
+        }else{
+            GeneratedCodec codec = CodecGenerator.getCodec(value.getClass());
+            buffer.put(VALUE_OBJECT);
+            writeString(buffer, value.getClass().getName());
+            codec.write(value, buffer);
+        }
+    }
+    
+    /**
+     * Reads a value written by {@link #writeValue(ByteBuffer, Object)}.
+     *
+     * @param buffer The buffer to read from
+     * @param context A class whose loader can see the classes of the value
+     * @param declared The declared type of the field, anything that is not an instance of it is rejected
+     *
+     * @return The read value
+     */
+    @Nullable
+    public static Object readValue(@NotNull ByteBuffer buffer, @NotNull Class<?> context, @NotNull Class<?> declared){
+        byte type = buffer.get();
+        Object value;
+        switch(type){
+            case VALUE_NULL: return null;
+            case VALUE_BOOLEAN: value = readBoolean(buffer); break;
+            case VALUE_BYTE: value = buffer.get(); break;
+            case VALUE_SHORT: value = buffer.getShort(); break;
+            case VALUE_CHARACTER: value = buffer.getChar(); break;
+            case VALUE_INTEGER: value = buffer.getInt(); break;
+            case VALUE_LONG: value = buffer.getLong(); break;
+            case VALUE_FLOAT: value = buffer.getFloat(); break;
+            case VALUE_DOUBLE: value = buffer.getDouble(); break;
+            case VALUE_STRING: value = readString(buffer); break;
+            case VALUE_ENUM: return constant(readValueClass(buffer, context, declared).constants(), buffer.getInt());
+            case VALUE_OBJECT: return readValueClass(buffer, context, declared).codec().read(buffer);
+            default: throw new IllegalStateException("Unknown value type " + type);
+        }
+        if(value != null && !declared.isInstance(value)){
+            throw new IllegalStateException("Value of type " + value.getClass().getName() + " is not a " + declared.getName());
+        }
+        return value;
+    }
+    
+    /**
+     * Reads the class of a runtime typed value, it is checked before anything of it is initialized or allocated.
+     */
+    private static ValueClass readValueClass(ByteBuffer buffer, Class<?> context, Class<?> declared){
+        ValueClass valueClass = VALUE_CLASSES.get(context).read(buffer);
+        if(!declared.isAssignableFrom(valueClass.type)){
+            throw new IllegalStateException("Value class " + valueClass.name + " is not a " + declared.getName());
+        }
+        return valueClass;
+    }
+    
+    /**
+     * Writes the state that every {@link Event} has: the original value, the value and if it was canceled.
+     *
+     * @param buffer The buffer to write to
+     * @param event The event to write
+     */
+    public static void writeEventState(@NotNull ByteBuffer buffer, @NotNull Object event){
+        writeValue(buffer, getObject(event, Event$originalValue));
+        writeValue(buffer, getObject(event, Event$value));
+        writeBoolean(buffer, getBoolean(event, Event$canceled));
+    }
+    
+    public static void readEventState(@NotNull ByteBuffer buffer, @NotNull Object event){
+        Class<?> context = event.getClass();
+        putObject(event, Event$originalValue, readValue(buffer, context, Object.class));
+        putObject(event, Event$value, readValue(buffer, context, Object.class));
+        putBoolean(event, Event$canceled, readBoolean(buffer));
+    }
+    
+    /**
+     * The classes of runtime typed values that where read in the context of a class.
+     *
+     * A class is identified by the hash of its name, which is computed straight from the buffer. Only the first read
+     * of a class allocates, later reads compare the name in place. The table is copy on write, so reading never locks.
+     */
+    private static final class ValueClasses{
+        private static final ValueClass[] EMPTY = new ValueClass[0];
+        
+        private final Class<?> context;
+        private final Lock lock = new ReentrantLock();
+        private volatile ValueClass[] classes = EMPTY;
+        
+        ValueClasses(Class<?> context){
+            this.context = context;
+        }
+        
+        /**
+         * Reads a class name written by {@link #writeString(ByteBuffer, String)} and resolves it.
+         *
+         * @param buffer The buffer to read from
+         *
+         * @return The class
+         *
+         * @throws BufferUnderflowException If the length of the name is invalid
+         */
+        ValueClass read(ByteBuffer buffer){
+            int length = buffer.getInt();
+            checkLength(buffer, length);
+            int start = buffer.position();
+            // Hashed like String.hashCode, without creating the string.
+            int id = 0;
+            for(int i = 0; i < length; i++){
+                id = 31 * id + buffer.getChar();
+            }
+            for(ValueClass valueClass : classes){
+                if(valueClass.id == id && valueClass.matches(buffer, start, length)){
+                    return valueClass;
+                }
+            }
+            
+            char[] chars = new char[length];
+            for(int i = 0; i < length; i++){
+                chars[i] = buffer.getChar(start + i * Character.BYTES);
+            }
+            return add(id, new String(chars));
+        }
+        
+        private ValueClass add(int id, String name){
+            Class<?> type;
+            try{
+                // Not initialized, the name comes straight from the buffer and the class is not checked yet.
+                type = Class.forName(name, false, context.getClassLoader());
+            }catch(ClassNotFoundException | LinkageError e){
+                throw new IllegalStateException("Failed to find value class " + name, e);
+            }
+            ValueClass valueClass = new ValueClass(id, name, type);
+            
+            lock.lock();
+            try{
+                ValueClass[] current = classes;
+                for(ValueClass existing : current){
+                    if(existing.type == type){
+                        return existing;
+                    }
+                }
+                ValueClass[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = valueClass;
+                classes = updated;
+                return valueClass;
+            }finally{
+                lock.unlock();
+            }
+        }
+    }
+    
+    private static final class ValueClass{
+        final int id;
+        final String name;
+        final Class<?> type;
+        @Nullable
+        private volatile Object[] constants;
+        @Nullable
+        private volatile GeneratedCodec codec;
+        
+        ValueClass(int id, String name, Class<?> type){
+            this.id = id;
+            this.name = name;
+            this.type = type;
+        }
+        
+        boolean matches(ByteBuffer buffer, int start, int length){
+            if(name.length() != length){
+                return false;
+            }
+            for(int i = 0; i < length; i++){
+                if(name.charAt(i) != buffer.getChar(start + i * Character.BYTES)){
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        Object[] constants(){
+            Object[] constants = this.constants;
+            if(constants == null){
+                if(!type.isEnum()){
+                    throw new IllegalStateException("Value class " + name + " is not an enum");
+                }
+                // getEnumConstants copies the array on every call.
+                constants = type.getEnumConstants();
+                this.constants = constants;
+            }
+            return constants;
+        }
+        
+        GeneratedCodec codec(){
+            GeneratedCodec codec = this.codec;
+            if(codec == null){
+                codec = CodecGenerator.getCodec(type);
+                this.codec = codec;
+            }
+            return codec;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventBus;
+import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.HandlerGroup;
+import net.gudenau.events.ResultCache;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A bus for when there are a lot of them, like one per game entity.
+ *
+ * The registered types live in a small copy-on-write array of type and {@link CompactEventDispatcher} pairs that is
+ * searched linearly, which beats hashing for the handful of types a bus like this usually has. Freezing replaces the
+ * dispatchers with frozen ones and appends a marker pair, so it needs no extra field.
+ *
+ * Coalescing, deferred posting, journals, parallel dispatch and result caches are not supported.
+ */
+public final class CompactEventBus implements EventBus{
+    private static final Object[] EMPTY_TABLE = new Object[0];
+    private static final Object FROZEN = new Object();
+    
+    private static final AtomicReferenceFieldUpdater<CompactEventBus, Object[]> TABLE =
+        AtomicReferenceFieldUpdater.newUpdater(CompactEventBus.class, Object[].class, "table");
+    
+    private volatile Object[] table = EMPTY_TABLE;
+    
+    @Override
+    public void registerEvent(@NotNull Class<? extends Event<?>> type){
+        Object[] current;
+        Object[] updated;
+        do{
+            current = table;
+            if(isFrozen(current)){
+                throw new IllegalStateException("Event bus is frozen");
+            }
+            if(find(current, type) != null){
+                throw new IllegalStateException("Event " + type.getSimpleName() + " was already registered");
+            }
+            updated = Arrays.copyOf(current, current.length + 2);
+            updated[current.length] = type;
+            updated[current.length + 1] = new CompactEventDispatcher<>();
+        }while(!TABLE.compareAndSet(this, current, updated));
+    }
+    
+    private static boolean isFrozen(Object[] table){
+        return table.length != 0 && table[table.length - 2] == FROZEN;
+    }
+    
+    @Nullable
+    private static EventDispatcher<?, ?> find(Object[] table, Class<?> type){
+        for(int i = 0; i < table.length; i += 2){
+            if(table[i] == type){
+                return (EventDispatcher<?, ?>)table[i + 1];
+            }
+        }
+        return null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    @NotNull
+    private <T, E extends Event<T>> EventDispatcher<T, E> getDispatcher(Class<?> type){
+        EventDispatcher<T, E> dispatcher = (EventDispatcher<T, E>)find(table, type);
+        if(dispatcher == null){
+            throw new IllegalStateException("Event " + type.getSimpleName() + " was not registered");
+        }
+        return dispatcher;
+    }
+    
+    @Override
+    public <T, E extends Event<T>> void registerHandler(@NotNull Class<E> event, @NotNull Consumer<E> handler){
+        this.<T, E>getDispatcher(event).registerHandler(handler);
+    }
+    
+    @Override
+    public <T, E extends Event<T>> void registerHandler(@NotNull Class<E> event, @NotNull HandlerGroup group, @NotNull Consumer<E> handler){
+        this.<T, E>getDispatcher(event).registerHandler(group, handler);
+    }
+    
+    @Override
+    public <T, E extends Event<T>> void removeHandler(@NotNull Class<E> event, @NotNull Consumer<E> handler){
+        this.<T, E>getDispatcher(event).removeHandler(handler);
+    }
+    
+    @Override
+    public <T, E extends Event<T>> Optional<T> dispatchEvent(@NotNull E event){
+        return this.<T, E>getDispatcher(event.getClass()).dispatchEvent(event);
+    }
+    
+    @Override
+    public <T, E extends Event<T>> boolean hasHandlers(@NotNull Class<E> event){
+        return this.<T, E>getDispatcher(event).hasHandlers();
+    }
+    
+    @Override
+    public <T, E extends Event<T>> Optional<T> dispatchEvent(@NotNull Class<E> event, @NotNull Supplier<E> factory){
+        return this.<T, E>getDispatcher(event).dispatchEvent(factory);
+    }
+    
+    @Override
+    public <T, E extends Event<T>, V> Optional<T> dispatchEvent(@NotNull Class<E> event, @NotNull Function<? super V, E> factory, V value){
+        return this.<T, E>getDispatcher(event).dispatchEvent(factory, value);
+    }
+    
+    @NotNull
+    @Override
+    public <T, E extends Event<T>> EventDispatcher<T, E> dispatcherFor(@NotNull Class<E> event){
+        return getDispatcher(event);
+    }
+    
+    @Override
+    public <T, E extends Event<T>> void setParallel(@NotNull Class<E> event, @Nullable ForkJoinPool pool){
+        this.<T, E>getDispatcher(event).setParallel(pool);
+    }
+    
+    @NotNull
+    @Override
+    public <T, E extends Event<T>> ResultCache enableResultCache(@NotNull Class<E> event, int capacity){
+        return this.<T, E>getDispatcher(event).enableResultCache(capacity);
+    }
+    
+    @Override
+    public void freeze(){
+        Object[] current;
+        Object[] updated;
+        do{
+            current = table;
+            if(isFrozen(current)){
+                return;
+            }
+            updated = Arrays.copyOf(current, current.length + 2);
+            for(int i = 0; i < current.length; i += 2){
+                Class<?> type = (Class<?>)current[i];
+                boolean cancelable = !Event.NonCancelable.class.isAssignableFrom(type);
+                updated[i + 1] = ((CompactEventDispatcher<?, ?>)current[i + 1]).freeze(cancelable);
+            }
+            updated[current.length] = FROZEN;
+        }while(!TABLE.compareAndSet(this, current, updated));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.HandlerGroup;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A dispatcher for when there are a lot of them.
+ *
+ * The only state is a single reference to an interned {@link HandlerList}, which is swapped with a CAS when handlers
+ * change. There are no locks and no per-instance class loader, dispatchers with the same handlers share the list and
+ * its generated consumers. Handlers are called in the order they where registered.
+ *
+ * Freezing swaps in the frozen list with the same handlers, so it costs no memory per dispatcher. Parallel dispatch and
+ * result caches are not supported.
+ */
+public final class CompactEventDispatcher<T, E extends Event<T>> implements EventDispatcher<T, E>{
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<CompactEventDispatcher, HandlerList> HANDLERS =
+        AtomicReferenceFieldUpdater.newUpdater(CompactEventDispatcher.class, HandlerList.class, "handlers");
+    
+    private volatile HandlerList<T, E> handlers = HandlerList.empty();
+    
+    @Override
+    public void registerHandler(@NotNull Consumer<E> handler){
+        HandlerList<T, E> current;
+        do{
+            current = handlers;
+        }while(!HANDLERS.compareAndSet(this, current, current.with(handler)));
+    }
+    
+    @Override
+    public void registerHandler(@NotNull HandlerGroup group, @NotNull Consumer<E> handler){
+        registerHandler(GroupedHandler.wrap(group, handler));
+    }
+    
+    @Override
+    public void removeHandler(@NotNull Consumer<E> handler){
+        HandlerList<T, E> current;
+        do{
+            current = handlers;
+        }while(!HANDLERS.compareAndSet(this, current, current.without(handler)));
+    }
+    
+    @Override
+    public Optional<T> dispatchEvent(@NotNull E event){
+        HandlerList<T, E> handlers = this.handlers;
+        if(handlers.size() != 0){
+            Object trace = EventTracer.active ? EventTracer.INSTANCE.beginDispatch() : null;
+            handlers.consumer(event.isCancelable()).consumeEvent(event);
+            if(trace != null){
+                EventTracer.INSTANCE.endDispatch(trace, event.getClass(), handlers.size());
+            }
+        }
+        return event.getResult();
+    }
+    
+    @Override
+    public boolean hasHandlers(){
+        return handlers.size() != 0;
+    }
+    
+    @Override
+    public Optional<T> dispatchEvent(@NotNull Supplier<E> factory){
+        return handlers.size() == 0 ? Optional.empty() : dispatchEvent(factory.get());
+    }
+    
+    @Override
+    public <V> Optional<T> dispatchEvent(@NotNull Function<? super V, E> factory, V value){
+        return handlers.size() == 0 ? Optional.empty() : dispatchEvent(factory.apply(value));
+    }
+    
+    @Override
+    public void dispatchEvents(@NotNull List<E> events){
+        HandlerList<T, E> handlers = this.handlers;
+        if(events.isEmpty() || handlers.size() == 0){
+            return;
+        }
+        EventConsumer<T, E> consumer = handlers.consumer(events.get(0).isCancelable());
+        for(E event : events){
+            consumer.consumeEvent(event);
+        }
+    }
+    
+    @NotNull
+    @Override
+    public EventDispatcher<T, E> freeze(){
+        return freeze(true);
+    }
+    
+    /**
+     * Freezes this dispatcher with a known cancelability, see {@link EventDispatcherImpl#freeze(boolean)}.
+     *
+     * @param cancelable Weather or not the events can be cancelable
+     *
+     * @return The frozen dispatcher
+     */
+    @NotNull
+    public EventDispatcher<T, E> freeze(boolean cancelable){
+        HandlerList<T, E> current;
+        HandlerList<T, E> frozen;
+        do{
+            current = handlers;
+            frozen = current.frozen();
+        }while(current != frozen && !HANDLERS.compareAndSet(this, current, frozen));
+        return new FrozenEventDispatcher<>(frozen.consumer(cancelable), frozen.size(), null);
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import net.gudenau.events.Event;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates the consumer classes for every dispatcher.
+ *
+ * There is a single class per handler count and cancelability, they are shared by every dispatcher and all live in
+ * the same ClassLoader. When any handler is a {@link GroupedHandler} the grouped variant is used, it reads the enabled
+ * mask of {@link HandlerGroupImpl} once per event and skips handlers whose bit is cleared.
+ */
+final class ConsumerGenerator{
+    private static final MapLocker<String, Class<?>> HANDLER_CLASSES = MapLocker.create();
+    
+    private ConsumerGenerator(){}
+    
+    /**
+     * Creates a new event consumer that calls the provided handlers in order.
+     *
+     * @param handlers The handlers to call
+     * @param cancelable Weather or not the event is cancelable
+     *
+     * @return The event new consumer
+     */
+    @SuppressWarnings("unchecked")
+    static <T, E extends Event<T>> EventConsumer<T, E> createConsumer(Consumer<E>[] handlers, boolean cancelable){
+        try{
+            int size = handlers.length;
+            boolean grouped = false;
+            for(Consumer<E> handler : handlers){
+                if(handler instanceof GroupedHandler){
+                    grouped = true;
+                    break;
+                }
+            }
+            String className = ("net.gudenau.events.gen.Handler" + (grouped ? "Grouped" : "") + (cancelable ? "Cancelable" : "") + size).intern();
+            // Generate and load the class if required.
+            Class<? extends EventConsumer<T, E>> klass = (Class<? extends EventConsumer<T, E>>)HANDLER_CLASSES.computeIfAbsent(className, ConsumerGenerator::generateClass);
+            if(!grouped){
+                Class<?>[] params = new Class<?>[size];
+                Arrays.fill(params, Consumer.class);
+                return klass.getDeclaredConstructor(params).newInstance((Object[])handlers);
+            }
+            // The handlers are passed unwrapped, followed by the bit each one needs.
+            Class<?>[] params = new Class<?>[size * 2];
+            Object[] arguments = new Object[size * 2];
+            for(int i = 0; i < size; i++){
+                params[i] = Consumer.class;
+                params[size + i] = long.class;
+                arguments[i] = GroupedHandler.unwrap(handlers[i]);
+                arguments[size + i] = GroupedHandler.bitOf(handlers[i]);
+            }
+            return klass.getDeclaredConstructor(params).newInstance(arguments);
+        }catch(ReflectiveOperationException e){
+            throw new RuntimeException("Failed to create event handler", e);
+        }
+    }
+    
+    /**
+     * Our special ClassLoader that generates our classes.
+     *
+     * This is where the dispatch speed comes from.
+     */
+    private static final ClassLoader CLASS_LOADER = new ClassLoader(ConsumerGenerator.class.getClassLoader()){
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException{
+            if(!name.startsWith("net.gudenau.events.gen.Handler")){
+                throw new ClassNotFoundException(name);
+            }
+            
+            Object trace = EventTracer.active ? EventTracer.INSTANCE.beginGeneration() : null;
+    
+            String className = name.replaceAll("\\.", "/");
+    
+            // Get number of handlers from name
+            int index = className.length() - 1;
+            while(Character.isDigit(className.charAt(index))){
+                index--;
+            }
+            int eventCount = Integer.parseInt(className.substring(index + 1));
+    
+            // Get event type info
+            boolean cancelable = name.contains("Cancelable");
+            boolean grouped = name.contains("Grouped");
+    
+            ClassWriter writer = new ClassWriter(0);
+            
+            writer.visit(
+                V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC, className,
+                "<T:Ljava/lang/Object;E:Lnet/gudenau/events/Event<TT;>;>Ljava/lang/Object;Lnet/gudenau/events/impl/EventConsumer<TT;TE;>;",
+                "java/lang/Object",
+                new String[]{ "net/gudenau/events/impl/EventConsumer" }
+            );
+            
+            for(int i = 0; i < eventCount; i++){
+                writer.visitField(ACC_PRIVATE | ACC_FINAL, "consumer" + i, "Ljava/util/function/Consumer;", "Ljava/util/function/Consumer<TE;>;", null);
+                if(grouped){
+                    writer.visitField(ACC_PRIVATE | ACC_FINAL, "mask" + i, "J", null, null);
+                }
+            }
+            
+            { // <init>
+                StringBuilder initDescriptor = new StringBuilder("(");
+                StringBuilder initSignature = new StringBuilder("(");
+                
+                for(int i = 0; i < eventCount; i++){
+                    initDescriptor.append("Ljava/util/function/Consumer;");
+                    initSignature.append("Ljava/util/function/Consumer<TE;>;");
+                }
+                if(grouped){
+                    for(int i = 0; i < eventCount; i++){
+                        initDescriptor.append('J');
+                        initSignature.append('J');
+                    }
+                }
+                
+                initDescriptor.append(")V");
+                initSignature.append(")V");
+                
+                MethodVisitor method = writer.visitMethod(ACC_PUBLIC, "<init>", initDescriptor.toString(), initSignature.toString(), null);
+                method.visitCode();
+                
+                Label start = new Label();
+                method.visitLabel(start);
+                
+                method.visitVarInsn(ALOAD, 0);
+                method.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+                
+                for(int i = 0; i < eventCount; i++){
+                    method.visitVarInsn(ALOAD, 0);
+                    method.visitVarInsn(ALOAD, i + 1);
+                    method.visitFieldInsn(PUTFIELD, className, "consumer" + i, "Ljava/util/function/Consumer;");
+                }
+                if(grouped){
+                    for(int i = 0; i < eventCount; i++){
+                        method.visitVarInsn(ALOAD, 0);
+                        method.visitVarInsn(LLOAD, eventCount + 1 + i * 2);
+                        method.visitFieldInsn(PUTFIELD, className, "mask" + i, "J");
+                    }
+                }
+                
+                method.visitInsn(RETURN);
+                
+                Label end = new Label();
+                method.visitLabel(end);
+                
+                method.visitLocalVariable("this", "L" + className + ";", null, start, end, 0);
+                for(int i = 0; i < eventCount; i++){
+                    method.visitLocalVariable("consumer" + i, "Ljava/util/function/Consumer;", "L" + className + "<TT;TE;>;", start, end, i + 1);
+                }
+                
+                method.visitMaxs(3, eventCount * (grouped ? 3 : 1) + 1);
+                method.visitEnd();
+            }
+            
+            { // consumeEvent(Event)
+                MethodVisitor method = writer.visitMethod(ACC_PUBLIC | ACC_FINAL, "consumeEvent", "(Lnet/gudenau/events/Event;)V", "(TE;)V", null);
+                method.visitCode();
+                
+                Label start = new Label();
+                method.visitLabel(start);
+                
+                if(grouped){
+                    method.visitMethodInsn(INVOKESTATIC, "net/gudenau/events/impl/HandlerGroupImpl", "enabledMask", "()J", false);
+                    method.visitVarInsn(LSTORE, 2);
+                }
+                
+                for(int i = 0; i < eventCount; i++){
+                    if(grouped){
+                        // Skip the handler if its bit is cleared, the canceled check jumps to the same place.
+                        Label next = new Label();
+                        method.visitVarInsn(LLOAD, 2);
+                        method.visitVarInsn(ALOAD, 0);
+                        method.visitFieldInsn(GETFIELD, className, "mask" + i, "J");
+                        method.visitInsn(LAND);
+                        method.visitInsn(LCONST_0);
+                        method.visitInsn(LCMP);
+                        method.visitJumpInsn(IFEQ, next);
+                        method.visitVarInsn(ALOAD, 0);
+                        method.visitFieldInsn(GETFIELD, className, "consumer" + i, "Ljava/util/function/Consumer;");
+                        method.visitVarInsn(ALOAD, 1);
+                        method.visitMethodInsn(INVOKEINTERFACE, "java/util/function/Consumer", "accept", "(Ljava/lang/Object;)V", true);
+                        if(cancelable && i < eventCount - 1){
+                            method.visitVarInsn(ALOAD, 1);
+                            method.visitMethodInsn(INVOKEVIRTUAL, "net/gudenau/events/Event", "wasCanceled", "()Z", false);
+                            method.visitJumpInsn(IFEQ, next);
+                            method.visitInsn(RETURN);
+                        }
+                        method.visitLabel(next);
+                        if(i == 0){
+                            method.visitFrame(F_APPEND, 1, new Object[]{LONG}, 0, null);
+                        }else{
+                            method.visitFrame(F_SAME, 0, null, 0, null);
+                        }
+                        continue;
+                    }
+                    method.visitVarInsn(ALOAD, 0);
+                    method.visitFieldInsn(GETFIELD, className, "consumer" + i, "Ljava/util/function/Consumer;");
+                    method.visitVarInsn(ALOAD, 1);
+                    method.visitMethodInsn(INVOKEINTERFACE, "java/util/function/Consumer", "accept", "(Ljava/lang/Object;)V", true);
+                    if(cancelable && i < eventCount - 1){
+                        method.visitVarInsn(ALOAD, 1);
+                        method.visitMethodInsn(INVOKEVIRTUAL, "net/gudenau/events/Event", "wasCanceled", "()Z", false);
+                        Label jump = new Label();
+                        method.visitJumpInsn(IFEQ, jump);
+                        method.visitInsn(RETURN);
+                        method.visitLabel(jump);
+                        method.visitFrame(F_SAME, 0, null, 0, null);
+                    }
+                }
+                
+                method.visitInsn(RETURN);
+                
+                Label end = new Label();
+                method.visitLabel(end);
+                
+                method.visitLocalVariable("this", "L" + className + ";", null, start, end, 0);
+                method.visitLocalVariable("event", "Lnet/gudenau/events/Event;", "TE;", start, end, 1);
+                
+                method.visitMaxs(grouped ? 4 : 2, grouped ? 4 : 2);
+                method.visitEnd();
+            }
+            
+            byte[] bytecode = writer.toByteArray();
+            Class<?> klass = defineClass(name, bytecode, 0, bytecode.length);
+            if(trace != null){
+                EventTracer.INSTANCE.endGeneration(trace, name, bytecode.length);
+            }
+            return klass;
+        }
+    };
+    
+    /**
+     * Generates a new class.
+     *
+     * All this does is call our special ClassLoader.
+     *
+     * @param name The name of the class
+     *
+     * @return The new class
+     */
+    private static Class<?> generateClass(String name){
+        try{
+            return AccessController.doPrivileged((PrivilegedExceptionAction<Class<?>>)()->
+                CLASS_LOADER.loadClass(name)
+            );
+        }catch(Exception e){
+            throw new RuntimeException("Failed to generate handler class: " + name.substring(name.lastIndexOf('.') + 1), e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventDispatcher;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A multi-producer queue of events that get dispatched in bulk by a single flushing thread.
+ *
+ * Posting is a lock-free enqueue, flushing drains the queue, groups the events by their type and hands every group to
+ * its dispatcher in one go. Events that did not fit in the time budget of a flush are carried over to the next one, as
+ * are the events that where not handed to a dispatcher yet when a handler threw.
+ */
+final class DeferredQueue{
+    /**
+     * How many events get dispatched between time budget checks.
+     */
+    private static final int CHUNK_SIZE = 64;
+    
+    private final Queue<Event<?>> queue = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Function<Class<? extends Event<?>>, EventDispatcher<?, ? extends Event<?>>> dispatchers;
+    
+    private List<Event<?>> carried = new ArrayList<>();
+    
+    DeferredQueue(Function<Class<? extends Event<?>>, EventDispatcher<?, ? extends Event<?>>> dispatchers){
+        this.dispatchers = dispatchers;
+    }
+    
+    void post(@NotNull Event<?> event){
+        queue.offer(event);
+    }
+    
+    /**
+     * Dispatches queued events until the queue is empty or the deadline passed.
+     *
+     * Calls from inside of a handler that is being flushed do nothing.
+     *
+     * @param timed Weather or not the deadline should be checked
+     * @param deadline The {@link System#nanoTime()} value to stop at
+     *
+     * @return The amount of events that where dispatched
+     */
+    int flush(boolean timed, long deadline){
+        if(flushLock.isHeldByCurrentThread()){
+            return 0;
+        }
+        flushLock.lock();
+        try{
+            List<Event<?>> pending = carried;
+            carried = new ArrayList<>();
+            Event<?> event;
+            while((event = queue.poll()) != null){
+                pending.add(event);
+            }
+            
+            Map<Class<? extends Event<?>>, List<Event<?>>> groups = new LinkedHashMap<>();
+            for(Event<?> pendingEvent : pending){
+                groups.computeIfAbsent(typeOf(pendingEvent), (type)->new ArrayList<>()).add(pendingEvent);
+            }
+            
+            int count = 0;
+            boolean expired = false;
+            Iterator<Map.Entry<Class<? extends Event<?>>, List<Event<?>>>> iterator = groups.entrySet().iterator();
+            // The events of the current group that are not handed to its dispatcher yet.
+            List<Event<?>> undispatched = null;
+            try{
+                while(iterator.hasNext()){
+                    Map.Entry<Class<? extends Event<?>>, List<Event<?>>> group = iterator.next();
+                    List<Event<?>> events = group.getValue();
+                    if(expired){
+                        carried.addAll(events);
+                        continue;
+                    }
+                    undispatched = events;
+                    EventDispatcher<?, ? extends Event<?>> dispatcher = dispatchers.apply(group.getKey());
+                    if(!timed){
+                        undispatched = null;
+                        dispatch(dispatcher, events);
+                        count += events.size();
+                        continue;
+                    }
+                    for(int start = 0; start < events.size(); start += CHUNK_SIZE){
+                        // Always make some progress, even if draining the queue used up the budget.
+                        if(count > 0 && System.nanoTime() - deadline >= 0){
+                            carried.addAll(events.subList(start, events.size()));
+                            expired = true;
+                            break;
+                        }
+                        int end = Math.min(start + CHUNK_SIZE, events.size());
+                        undispatched = events.subList(end, events.size());
+                        List<Event<?>> chunk = events.subList(start, end);
+                        dispatch(dispatcher, chunk);
+                        count += chunk.size();
+                    }
+                    undispatched = null;
+                }
+                return count;
+            }finally{
+                // Only still set when something threw. The batch that threw is not retried, its handlers already saw part
+                // of it.
+                if(undispatched != null){
+                    carried.addAll(undispatched);
+                }
+                while(iterator.hasNext()){
+                    carried.addAll(iterator.next().getValue());
+                }
+            }
+        }finally{
+            flushLock.unlock();
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Event<?>> typeOf(Event<?> event){
+        return (Class<? extends Event<?>>)event.getClass();
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void dispatch(EventDispatcher dispatcher, List events){
+        dispatcher.dispatchEvents(events);
+    }
+}
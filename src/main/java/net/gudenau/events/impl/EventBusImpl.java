@@ -19,25 +19,91 @@
 
 package net.gudenau.events.impl;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import net.gudenau.events.Event;
 import net.gudenau.events.EventBus;
 import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.EventJournal;
+import net.gudenau.events.HandlerGroup;
+import net.gudenau.events.ResultCache;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public final class EventBusImpl implements EventBus{
     public static final EventBus INSTANCE = new EventBusImpl();
     
+    private static final int DEFAULT_COALESCING_CAPACITY = 4096;
+    
     private final MapLocker<Class<? extends Event<?>>, EventDispatcher<?, ? extends Event<?>>> dispatchers = MapLocker.create();
+    private final MapLocker<Class<? extends Event<?>>, CoalescingStage<?, ? extends Event<?>>> coalescingStages = MapLocker.create();
+    private final DeferredQueue deferredQueue = new DeferredQueue(dispatchers::get);
+    private volatile EventJournalImpl journal = null;
+    
+    // Registration is rare, the lock only keeps it from racing with freeze.
+    private final Lock registrationLock = new ReentrantLock();
+    private volatile Map<Class<?>, EventDispatcher<?, ?>> frozenDispatchers = null;
     
+    // Copy on write, maps every registered type to its coalescing stage or dispatcher so posting never locks.
+    private volatile Map<Class<?>, Object> postTargets = Collections.emptyMap();
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public void registerEvent(@NotNull Class<? extends Event<?>> type){
-        if(dispatchers.putIfAbsent(type, EventDispatcher.createInstance()) != null){
-            throw new IllegalStateException("Event " + type.getSimpleName() + " was already registered");
+        registrationLock.lock();
+        try{
+            if(frozenDispatchers != null){
+                throw new IllegalStateException("Event bus is frozen");
+            }
+            BusDispatcher dispatcher = new BusDispatcher(this, type, EventDispatcher.createInstance());
+            if(dispatchers.putIfAbsent(type, dispatcher) != null){
+                throw new IllegalStateException("Event " + type.getSimpleName() + " was already registered");
+            }
+            setPostTarget(type, dispatcher);
+        }finally{
+            registrationLock.unlock();
         }
     }
     
+    /**
+     * Replaces the target of a type in {@link #postTargets}, the registration lock has to be held.
+     *
+     * @param type The type of the event
+     * @param target The coalescing stage or dispatcher of the type
+     */
+    private void setPostTarget(Class<?> type, Object target){
+        Map<Class<?>, Object> targets = new HashMap<>(postTargets);
+        targets.put(type, target);
+        postTargets = targets;
+    }
+    
+    /**
+     * Gets the dispatcher of a type, without locking once the bus is frozen.
+     *
+     * @param type The type of the event
+     *
+     * @return The dispatcher or null if the type was not registered
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private <T, E extends Event<T>> EventDispatcher<T, E> lookup(Class<?> type){
+        Map<Class<?>, EventDispatcher<?, ?>> frozen = frozenDispatchers;
+        if(frozen != null){
+            return (EventDispatcher<T, E>)frozen.get(type);
+        }
+        return (EventDispatcher<T, E>)dispatchers.get((Class<E>)type);
+    }
+    
     @SuppressWarnings("unchecked")
     @Override
     public <T, E extends Event<T>> void registerHandler(@NotNull Class<E> event, @NotNull Consumer<E> handler){
@@ -49,6 +115,17 @@ public final class EventBusImpl implements EventBus{
         }
     }
     
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T, E extends Event<T>> void registerHandler(@NotNull Class<E> event, @NotNull HandlerGroup group, @NotNull Consumer<E> handler){
+        EventDispatcher<T, E> dispatcher = (EventDispatcher<T, E>)dispatchers.get(event);
+        if(dispatcher != null){
+            dispatcher.registerHandler(group, handler);
+        }else{
+            throw new IllegalStateException("Event " + event.getSimpleName() + " was not registered");
+        }
+    }
+    
     @SuppressWarnings("unchecked")
     @Override
     public <T, E extends Event<T>> void removeHandler(@NotNull Class<E> event, @NotNull Consumer<E> handler){
@@ -60,14 +137,167 @@ public final class EventBusImpl implements EventBus{
         }
     }
     
-    @SuppressWarnings("unchecked")
     @Override
     public <T, E extends Event<T>> Optional<T> dispatchEvent(@NotNull E event){
-        EventDispatcher<T, E> dispatcher = (EventDispatcher<T, E>)dispatchers.get((Class<E>)event.getClass());
+        EventDispatcher<T, E> dispatcher = lookup(event.getClass());
         if(dispatcher != null){
             return dispatcher.dispatchEvent(event);
         }else{
             throw new IllegalStateException("Event " + event.getClass().getSimpleName() + " was not registered");
         }
     }
+    
+    @Override
+    public <T, E extends Event<T>> boolean hasHandlers(@NotNull Class<E> event){
+        return this.<T, E>dispatcherFor(event).hasHandlers();
+    }
+    
+    @Override
+    public <T, E extends Event<T>> Optional<T> dispatchEvent(@NotNull Class<E> event, @NotNull Supplier<E> factory){
+        return this.<T, E>dispatcherFor(event).dispatchEvent(factory);
+    }
+    
+    @Override
+    public <T, E extends Event<T>, V> Optional<T> dispatchEvent(@NotNull Class<E> event, @NotNull Function<? super V, E> factory, V value){
+        return this.<T, E>dispatcherFor(event).dispatchEvent(factory, value);
+    }
+    
+    @Override
+    public <T, E extends Event<T>> void registerCoalescing(@NotNull Class<E> event, @NotNull Function<? super E, ?> key){
+        registerCoalescing(event, key, (staged, posted)->posted, DEFAULT_COALESCING_CAPACITY);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T, E extends Event<T>> void registerCoalescing(@NotNull Class<E> event, @NotNull Function<? super E, ?> key, @NotNull BinaryOperator<E> merger, int capacity){
+        if(capacity <= 0){
+            throw new IllegalArgumentException("Coalescing capacity must be positive");
+        }
+        EventDispatcher<T, E> dispatcher = (EventDispatcher<T, E>)dispatchers.get(event);
+        if(dispatcher == null){
+            throw new IllegalStateException("Event " + event.getSimpleName() + " was not registered");
+        }
+        registrationLock.lock();
+        try{
+            CoalescingStage<T, E> stage = new CoalescingStage<>(dispatcher, key, merger, capacity);
+            if(coalescingStages.putIfAbsent(event, stage) != null){
+                throw new IllegalStateException("Event " + event.getSimpleName() + " is already coalescable");
+            }
+            setPostTarget(event, stage);
+        }finally{
+            registrationLock.unlock();
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T, E extends Event<T>> void postCoalesced(@NotNull E event){
+        Object target = postTargets.get(event.getClass());
+        if(target instanceof CoalescingStage){
+            ((CoalescingStage<T, E>)target).stage(event);
+        }else{
+            throw new IllegalStateException("Event " + event.getClass().getSimpleName() + " is not coalescable");
+        }
+    }
+    
+    @Override
+    public int flushCoalesced(){
+        int count = 0;
+        for(CoalescingStage<?, ? extends Event<?>> stage : coalescingStages.values()){
+            count += stage.flush();
+        }
+        return count;
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T, E extends Event<T>> void post(@NotNull E event){
+        Object target = postTargets.get(event.getClass());
+        if(target instanceof CoalescingStage){
+            ((CoalescingStage<T, E>)target).stage(event);
+        }else if(target != null){
+            deferredQueue.post(event);
+        }else{
+            throw new IllegalStateException("Event " + event.getClass().getSimpleName() + " was not registered");
+        }
+    }
+    
+    @Override
+    public int flush(){
+        return deferredQueue.flush(false, 0) + flushCoalesced();
+    }
+    
+    @Override
+    public int flush(long budget, @NotNull TimeUnit unit){
+        long deadline = System.nanoTime() + unit.toNanos(budget);
+        int count = deferredQueue.flush(true, deadline);
+        if(System.nanoTime() - deadline < 0){
+            count += flushCoalesced();
+        }
+        return count;
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T, E extends Event<T>> void setParallel(@NotNull Class<E> event, @Nullable ForkJoinPool pool){
+        EventDispatcher<T, E> dispatcher = (EventDispatcher<T, E>)dispatchers.get(event);
+        if(dispatcher != null){
+            dispatcher.setParallel(pool);
+        }else{
+            throw new IllegalStateException("Event " + event.getSimpleName() + " was not registered");
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    @NotNull
+    @Override
+    public <T, E extends Event<T>> ResultCache enableResultCache(@NotNull Class<E> event, int capacity){
+        EventDispatcher<T, E> dispatcher = (EventDispatcher<T, E>)dispatchers.get(event);
+        if(dispatcher != null){
+            return dispatcher.enableResultCache(capacity);
+        }else{
+            throw new IllegalStateException("Event " + event.getSimpleName() + " was not registered");
+        }
+    }
+    
+    @NotNull
+    @Override
+    public <T, E extends Event<T>> EventDispatcher<T, E> dispatcherFor(@NotNull Class<E> event){
+        EventDispatcher<T, E> dispatcher = lookup(event);
+        if(dispatcher != null){
+            return dispatcher;
+        }else{
+            throw new IllegalStateException("Event " + event.getSimpleName() + " was not registered");
+        }
+    }
+    
+    @Override
+    public void freeze(){
+        registrationLock.lock();
+        try{
+            if(frozenDispatchers == null){
+                Map<Class<?>, EventDispatcher<?, ?>> frozen = new HashMap<>();
+                for(EventDispatcher<?, ? extends Event<?>> dispatcher : dispatchers.values()){
+                    BusDispatcher<?, ?> busDispatcher = (BusDispatcher<?, ?>)dispatcher;
+                    frozen.put(busDispatcher.getType(), busDispatcher.freeze());
+                }
+                frozenDispatchers = frozen;
+            }
+        }finally{
+            registrationLock.unlock();
+        }
+    }
+    
+    @Override
+    public void setJournal(@Nullable EventJournal journal){
+        if(journal != null && !(journal instanceof EventJournalImpl)){
+            throw new IllegalArgumentException("Unsupported journal implementation " + journal.getClass().getName());
+        }
+        this.journal = (EventJournalImpl)journal;
+    }
+    
+    @Nullable
+    EventJournalImpl getJournal(){
+        return journal;
+    }
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventBus;
+import net.gudenau.events.EventChannel;
+import net.gudenau.events.EventCodec;
+import org.jetbrains.annotations.NotNull;
+
+import static net.gudenau.events.impl.ChannelLayout.*;
+
+/**
+ * A reader of a ring file.
+ *
+ * A slot is read optimistically, the event is decoded straight from the mapped file and then the sequence of the slot
+ * is checked again. If the writer got to the slot in the mean time the decoded event is thrown away and counted as
+ * lost.
+ */
+public final class EventChannelReader implements EventChannel.Reader{
+    private static final Binding<?>[] NO_BINDINGS = new Binding<?>[0];
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer payload;
+    private final EventBus bus;
+    private final int slotCount;
+    private final int slotSize;
+    
+    private final Lock bindingLock = new ReentrantLock();
+    private volatile Binding<?>[] bindings = NO_BINDINGS;
+    private long next;
+    private volatile long lost = 0;
+    
+    private EventChannelReader(FileChannel channel, MappedByteBuffer buffer, EventBus bus){
+        this.channel = channel;
+        this.buffer = buffer;
+        this.bus = bus;
+        
+        payload = buffer.duplicate().order(order());
+        slotCount = buffer.getInt(SLOT_COUNT_OFFSET);
+        slotSize = buffer.getInt(SLOT_SIZE_OFFSET);
+        next = buffer.getLong(HEAD_OFFSET) + 1;
+    }
+    
+    @NotNull
+    public static EventChannelReader open(@NotNull Path path, @NotNull EventBus bus) throws IOException{
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try{
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(order());
+            if(!isValid(buffer)){
+                throw new IOException(path + " is not a ring file");
+            }
+            return new EventChannelReader(channel, buffer, bus);
+        }catch(IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+    
+    @Override
+    public <E extends Event<?>> void bind(@NotNull Class<E> type, @NotNull EventCodec<E> codec){
+        int id = Utils.typeId(type);
+        bindingLock.lock();
+        try{
+            Binding<?>[] bindings = this.bindings;
+            for(Binding<?> binding : bindings){
+                if(binding.id == id){
+                    throw new IllegalStateException("Event " + type.getSimpleName() + " or an event with the same id was already bound");
+                }
+            }
+            bindings = Arrays.copyOf(bindings, bindings.length + 1);
+            bindings[bindings.length - 1] = new Binding<>(id, codec);
+            this.bindings = bindings;
+        }finally{
+            bindingLock.unlock();
+        }
+    }
+    
+    @Override
+    public int poll(){
+        return poll(Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public int poll(int limit){
+        int count = 0;
+        while(count < limit){
+            long next = this.next;
+            int slot = slotOffset(next, slotCount, slotSize);
+            long sequence = buffer.getLong(slot + SLOT_SEQUENCE_OFFSET);
+            Utils.loadFence();
+            
+            if(sequence != next){
+                long head = buffer.getLong(HEAD_OFFSET);
+                // A newer event, or a busy slot after our event was published, means the writer lapped us.
+                if(sequence > next || (sequence == SEQUENCE_BUSY && head >= next)){
+                    skip(head);
+                    continue;
+                }
+                break;
+            }
+            
+            Binding<?> binding = findBinding(buffer.getInt(slot + SLOT_TYPE_OFFSET));
+            int length = buffer.getInt(slot + SLOT_LENGTH_OFFSET);
+            Event<?> event = null;
+            RuntimeException failure = null;
+            if(binding != null && length >= 0 && length <= slotSize - SLOT_PAYLOAD_OFFSET){
+                int start = slot + SLOT_PAYLOAD_OFFSET;
+                payload.limit(start + length).position(start);
+                try{
+                    event = binding.codec.decode(payload);
+                }catch(RuntimeException e){
+                    failure = e;
+                }
+            }
+            
+            Utils.loadFence();
+            if(buffer.getLong(slot + SLOT_SEQUENCE_OFFSET) != next){
+                // Torn read, whatever we decoded is garbage.
+                skip(buffer.getLong(HEAD_OFFSET));
+                continue;
+            }
+            
+            this.next = next + 1;
+            if(failure != null){
+                throw failure;
+            }
+            if(event != null){
+                bus.dispatchEvent(event);
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Moves past events that where overwritten, leaving one slot of room for the event the writer is working on.
+     *
+     * @param head The last published sequence
+     */
+    private void skip(long head){
+        long resume = Math.max(next + 1, head - slotCount + 2);
+        lost += resume - next;
+        next = resume;
+    }
+    
+    private Binding<?> findBinding(int id){
+        for(Binding<?> binding : bindings){
+            if(binding.id == id){
+                return binding;
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public long getLostCount(){
+        return lost;
+    }
+    
+    @Override
+    public void close() throws IOException{
+        channel.close();
+    }
+    
+    private static final class Binding<E extends Event<?>>{
+        private final int id;
+        private final EventCodec<E> codec;
+        
+        private Binding(int id, EventCodec<E> codec){
+            this.id = id;
+            this.codec = codec;
+        }
+    }
+}
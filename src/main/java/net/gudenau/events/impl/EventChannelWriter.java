@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventBus;
+import net.gudenau.events.EventChannel;
+import net.gudenau.events.EventCodec;
+import org.jetbrains.annotations.NotNull;
+
+import static net.gudenau.events.impl.ChannelLayout.*;
+
+/**
+ * The single writer of a ring file.
+ *
+ * Publishing marks the slot as busy, writes the payload and then the sequence with store fences in between, so a
+ * reader that sees the sequence also sees the payload.
+ */
+public final class EventChannelWriter implements EventChannel.Writer{
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer payload;
+    private final int slotCount;
+    private final int slotSize;
+    
+    private final Lock lock = new ReentrantLock();
+    private final Map<Class<?>, Binding<?>> bindings = Utils.createMap();
+    private final Map<Integer, Class<?>> ids = Utils.createMap();
+    private long sequence;
+    private boolean closed = false;
+    
+    private EventChannelWriter(FileChannel channel, FileLock fileLock, MappedByteBuffer buffer, int slotCount, int slotSize){
+        this.channel = channel;
+        this.fileLock = fileLock;
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+        this.slotSize = slotSize;
+        
+        payload = buffer.duplicate().order(order());
+        
+        if(isValid(buffer) && buffer.getInt(SLOT_COUNT_OFFSET) == slotCount && buffer.getInt(SLOT_SIZE_OFFSET) == slotSize){
+            sequence = buffer.getLong(HEAD_OFFSET);
+        }else{
+            for(int i = 0; i < buffer.capacity(); i += 8){
+                buffer.putLong(i, 0);
+            }
+            buffer.putInt(SLOT_COUNT_OFFSET, slotCount);
+            buffer.putInt(SLOT_SIZE_OFFSET, slotSize);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            Utils.storeFence();
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            sequence = 0;
+        }
+    }
+    
+    @NotNull
+    public static EventChannelWriter open(@NotNull Path path, int slotCount, int slotSize) throws IOException{
+        long size = fileSize(slotCount, slotSize);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try{
+            FileLock fileLock = channel.tryLock(MAGIC_OFFSET, HEADER_SIZE, false);
+            if(fileLock == null){
+                throw new IllegalStateException("Ring file " + path + " already has a writer");
+            }
+            // Never shrink a ring, readers that have it mapped would fault on the missing pages.
+            long existing = channel.size();
+            if(existing != 0 && existing != size){
+                throw new IOException("Ring file " + path + " is " + existing + " bytes, expected " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(order());
+            return new EventChannelWriter(channel, fileLock, buffer, slotCount, slotSize);
+        }catch(IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+    
+    @Override
+    public <E extends Event<?>> void bind(@NotNull Class<E> type, @NotNull EventCodec<E> codec){
+        lock.lock();
+        try{
+            int id = Utils.typeId(type);
+            if(bindings.containsKey(type) || ids.containsKey(id)){
+                throw new IllegalStateException("Event " + type.getSimpleName() + " or an event with the same id was already bound");
+            }
+            bindings.put(type, new Binding<>(id, codec));
+            ids.put(id, type);
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public <T, E extends Event<T>> void bridge(@NotNull EventBus bus, @NotNull Class<E> type, @NotNull EventCodec<E> codec){
+        bind(type, codec);
+        bus.registerHandler(type, this::publish);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public <E extends Event<?>> void publish(@NotNull E event){
+        lock.lock();
+        try{
+            if(closed){
+                throw new IllegalStateException("Writer was closed");
+            }
+            Binding<E> binding = (Binding<E>)bindings.get(event.getClass());
+            if(binding == null){
+                throw new IllegalStateException("Event " + event.getClass().getSimpleName() + " was not bound");
+            }
+            
+            long sequence = this.sequence + 1;
+            int slot = slotOffset(sequence, slotCount, slotSize);
+            buffer.putLong(slot + SLOT_SEQUENCE_OFFSET, SEQUENCE_BUSY);
+            Utils.storeFence();
+            
+            int start = slot + SLOT_PAYLOAD_OFFSET;
+            payload.limit(slot + slotSize).position(start);
+            try{
+                binding.codec.encode(event, payload);
+            }catch(BufferOverflowException e){
+                // The sequence was not used, the next publish will overwrite the busy slot.
+                throw new IllegalArgumentException("Event " + event.getClass().getSimpleName() + " does not fit in a slot of " + slotSize + " bytes", e);
+            }
+            buffer.putInt(slot + SLOT_TYPE_OFFSET, binding.id);
+            buffer.putInt(slot + SLOT_LENGTH_OFFSET, payload.position() - start);
+            Utils.storeFence();
+            
+            buffer.putLong(slot + SLOT_SEQUENCE_OFFSET, sequence);
+            buffer.putLong(HEAD_OFFSET, sequence);
+            this.sequence = sequence;
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public long getSequence(){
+        lock.lock();
+        long sequence = this.sequence;
+        lock.unlock();
+        return sequence;
+    }
+    
+    @Override
+    public void close() throws IOException{
+        lock.lock();
+        try{
+            closed = true;
+            fileLock.release();
+            channel.close();
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    private static final class Binding<E extends Event<?>>{
+        private final int id;
+        private final EventCodec<E> codec;
+        
+        private Binding(int id, EventCodec<E> codec){
+            this.id = id;
+            this.codec = codec;
+        }
+    }
+}
@@ -19,63 +19,129 @@
 
 package net.gudenau.events.impl;
 
-import java.security.AccessController;
-import java.security.PrivilegedExceptionAction;
-import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import net.gudenau.events.Event;
 import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.HandlerGroup;
+import net.gudenau.events.ResultCache;
 import org.jetbrains.annotations.NotNull;
-import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.Label;
-import org.objectweb.asm.MethodVisitor;
-
-import static org.objectweb.asm.Opcodes.*;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Does all of the grunt work.
  *
  * Responsible for:
- *  - Generating classes
  *  - Dispatching events
  *  - Managing event handlers
+ *
+ * The consumer classes themselves come from {@link ConsumerGenerator}. Once frozen every dispatch is forwarded to the
+ * {@link FrozenEventDispatcher}.
  */
 public final class EventDispatcherImpl<T, E extends Event<T>> implements EventDispatcher<T, E>{
-    private static final MapLocker<String, Class<?>> HANDLER_CLASSES = MapLocker.create();
-    
     private final SetLocker<Consumer<E>> handlers = SetLocker.create();
+    private final AtomicInteger handlerCount = new AtomicInteger();
     
     private final ReadWriteLock handlerLock = new ReentrantReadWriteLock();
     private EventConsumer<T, E> consumer = null;
+    private Class<?> consumerType = null;
+    private ForkJoinPool parallelPool = null;
+    private volatile FrozenEventDispatcher<T, E> frozen = null;
+    private volatile ResultCacheImpl<T, E> resultCache = null;
     
     @Override
     public void registerHandler(@NotNull Consumer<E> handler){
-        if(this.consumer != null){
-            Lock lock = handlerLock.writeLock();
-            lock.lock();
-            this.consumer = null;
+        Lock lock = handlerLock.writeLock();
+        lock.lock();
+        Class<?> invalidated;
+        boolean added;
+        try{
+            // Checked under the lock freeze snapshots the handlers under, so a racing handler is in the snapshot or
+            // rejected.
+            checkMutable();
+            invalidated = clearConsumer();
+            added = handlers.add(handler);
+        }finally{
             lock.unlock();
         }
-        handlers.add(handler);
+        traceInvalidated(invalidated, "register");
+        if(added){
+            handlerCount.incrementAndGet();
+            invalidateResults();
+        }
+    }
+    
+    @Override
+    public void registerHandler(@NotNull HandlerGroup group, @NotNull Consumer<E> handler){
+        registerHandler(GroupedHandler.wrap(group, handler));
     }
     
     @Override
     public void removeHandler(@NotNull Consumer<E> handler){
-        if(this.consumer != null){
-            Lock lock = handlerLock.writeLock();
-            lock.lock();
-            this.consumer = null;
+        Lock lock = handlerLock.writeLock();
+        lock.lock();
+        Class<?> invalidated;
+        boolean removed;
+        try{
+            checkMutable();
+            invalidated = clearConsumer();
+            removed = handlers.remove(handler) || removeGrouped(handler);
+        }finally{
             lock.unlock();
         }
-        handlers.remove(handler);
+        traceInvalidated(invalidated, "remove");
+        if(removed){
+            handlerCount.decrementAndGet();
+            invalidateResults();
+        }
+    }
+    
+    /**
+     * Removes the grouped wrapper of a handler, this has to search every handler.
+     *
+     * @param handler The handler to remove
+     *
+     * @return True if a wrapper was removed
+     */
+    @SuppressWarnings("unchecked")
+    private boolean removeGrouped(Consumer<E> handler){
+        for(Consumer<E> registered : handlers.toArray(Consumer[]::new)){
+            if(registered instanceof GroupedHandler && GroupedHandler.matches(registered, handler)){
+                return handlers.remove(registered);
+            }
+        }
+        return false;
     }
     
     @Override
     public Optional<T> dispatchEvent(@NotNull E event){
+        FrozenEventDispatcher<T, E> frozen = this.frozen;
+        if(frozen != null){
+            return frozen.dispatchEvent(event);
+        }
+        // Without handlers there is nothing to generate a consumer for.
+        if(handlerCount.get() == 0){
+            return event.getResult();
+        }
+        ResultCacheImpl<T, E> cache = resultCache;
+        long generation = 0;
+        long groups = 0;
+        if(cache != null){
+            if(cache.apply(event)){
+                return event.getResult();
+            }
+            generation = cache.generation();
+            groups = HandlerGroupImpl.enabledMask();
+        }
+        Object trace = EventTracer.active ? EventTracer.INSTANCE.beginDispatch() : null;
         Lock lock = handlerLock.readLock();
         lock.lock();
         if(consumer == null){
@@ -83,169 +149,184 @@ public final class EventDispatcherImpl<T, E extends Event<T>> implements EventDi
             Lock writeLock = handlerLock.writeLock();
             writeLock.lock();
             consumer = createConsumer(event.isCancelable());
+            consumerType = event.getClass();
             writeLock.unlock();
             lock.lock();
         }
         consumer.consumeEvent(event);
         lock.unlock();
+        if(trace != null){
+            EventTracer.INSTANCE.endDispatch(trace, event.getClass(), handlerCount.get());
+        }
+        if(cache != null){
+            cache.store(event, generation, groups);
+        }
         return event.getResult();
     }
     
+    @Override
+    public boolean hasHandlers(){
+        return handlerCount.get() != 0;
+    }
+    
+    @Override
+    public Optional<T> dispatchEvent(@NotNull Supplier<E> factory){
+        return handlerCount.get() == 0 ? Optional.empty() : dispatchEvent(factory.get());
+    }
+    
+    @Override
+    public <V> Optional<T> dispatchEvent(@NotNull Function<? super V, E> factory, V value){
+        return handlerCount.get() == 0 ? Optional.empty() : dispatchEvent(factory.apply(value));
+    }
+    
+    @Override
+    public void dispatchEvents(@NotNull List<E> events){
+        FrozenEventDispatcher<T, E> frozen = this.frozen;
+        if(frozen != null){
+            frozen.dispatchEvents(events);
+            return;
+        }
+        if(events.isEmpty() || handlerCount.get() == 0){
+            return;
+        }
+        if(resultCache != null){
+            // Every event has its own key, there is nothing to share across the batch.
+            for(E event : events){
+                dispatchEvent(event);
+            }
+            return;
+        }
+        // The consumers are immutable, so the snapshot stays valid when the handlers change during the batch.
+        Lock lock = handlerLock.readLock();
+        lock.lock();
+        EventConsumer<T, E> consumer = this.consumer;
+        lock.unlock();
+        if(consumer == null){
+            // Keep the new consumer in the local, a concurrent invalidate may clear the field right away.
+            Lock writeLock = handlerLock.writeLock();
+            writeLock.lock();
+            consumer = this.consumer;
+            if(consumer == null){
+                consumer = createConsumer(events.get(0).isCancelable());
+                this.consumer = consumer;
+                consumerType = events.get(0).getClass();
+            }
+            writeLock.unlock();
+        }
+        for(E event : events){
+            consumer.consumeEvent(event);
+        }
+    }
+    
+    @Override
+    public void setParallel(@Nullable ForkJoinPool pool){
+        checkMutable();
+        Lock lock = handlerLock.writeLock();
+        lock.lock();
+        this.parallelPool = pool;
+        lock.unlock();
+        invalidate("parallel");
+    }
+    
+    @NotNull
+    @Override
+    public EventDispatcher<T, E> freeze(){
+        return freeze(true);
+    }
+    
     /**
-     * Creates a new event consumer for this dispatcher.
+     * Freezes this dispatcher with a known cancelability, see {@link EventDispatcher#freeze()}.
      *
-     * @param cancelable Weather or not the event is cancelable
+     * The event type is not known up front, so the consumer has to be generated before the first event is seen. A
+     * cancelable consumer works for every event but checks {@link Event#wasCanceled()} after each handler, passing
+     * false skips those checks.
      *
-     * @return The event new consumer
+     * @param cancelable Weather or not the events can be cancelable
+     *
+     * @return The frozen dispatcher
      */
-    @SuppressWarnings("unchecked")
-    private EventConsumer<T, E> createConsumer(boolean cancelable){
-        try{
-            int size = handlers.size();
-            String className = ("net.gudenau.events.gen.Handler" + (cancelable ? "Cancelable" : "") + size).intern();
-            // Generate and load the class if required.
-            Class<? extends EventConsumer<T, E>> klass = (Class<? extends EventConsumer<T, E>>)HANDLER_CLASSES.computeIfAbsent(className, this::generateClass);
-            Class<?>[] params = new Class[size];
-            Arrays.fill(params, Consumer.class);
-            return klass.getDeclaredConstructor(params).newInstance((Object[])handlers.toArray(Consumer[]::new));
-        }catch(ReflectiveOperationException e){
-            throw new RuntimeException("Failed to create event handler", e);
+    @NotNull
+    public EventDispatcher<T, E> freeze(boolean cancelable){
+        Lock lock = handlerLock.writeLock();
+        lock.lock();
+        if(frozen == null){
+            frozen = new FrozenEventDispatcher<>(createConsumer(cancelable), handlerCount.get(), resultCache);
+            consumer = null;
+        }
+        lock.unlock();
+        return frozen;
+    }
+    
+    @NotNull
+    @Override
+    public ResultCache enableResultCache(int capacity){
+        checkMutable();
+        ResultCacheImpl<T, E> cache = new ResultCacheImpl<>(capacity);
+        resultCache = cache;
+        return cache;
+    }
+    
+    private void invalidateResults(){
+        ResultCacheImpl<T, E> cache = resultCache;
+        if(cache != null){
+            cache.invalidate();
+        }
+    }
+    
+    private void checkMutable(){
+        if(frozen != null){
+            throw new IllegalStateException("Dispatcher is frozen");
         }
     }
     
     /**
-     * Our special ClassLoader that generates our classes.
+     * Throws away the current consumer so the next dispatch creates a new one.
      *
-     * This is where the dispatch speed comes from.
+     * @param reason Why the consumer is thrown away, for the tracer
      */
-    private final ClassLoader classLoader = new ClassLoader(EventDispatcherImpl.class.getClassLoader()){
-        @Override
-        protected Class<?> findClass(String name) throws ClassNotFoundException{
-            if(!name.startsWith("net.gudenau.events.gen.Handler")){
-                throw new ClassNotFoundException(name);
-            }
+    private void invalidate(String reason){
+        if(this.consumer != null){
+            Lock lock = handlerLock.writeLock();
+            lock.lock();
+            Class<?> type = clearConsumer();
+            lock.unlock();
+            traceInvalidated(type, reason);
+        }
+    }
     
-            String className = name.replaceAll("\\.", "/");
+    /**
+     * Throws away the current consumer, the write lock has to be held.
+     *
+     * @return The event type of the consumer that was thrown away, or null if there was none
+     */
+    @Nullable
+    private Class<?> clearConsumer(){
+        if(consumer == null){
+            return null;
+        }
+        consumer = null;
+        return consumerType;
+    }
     
-            // Get number of handlers from name
-            int index = className.length() - 1;
-            while(Character.isDigit(className.charAt(index))){
-                index--;
-            }
-            int eventCount = Integer.parseInt(className.substring(index + 1));
-    
-            // Get event type info
-            boolean cancelable = name.contains("Cancelable");
-    
-            ClassWriter writer = new ClassWriter(0);
-            
-            writer.visit(
-                V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC, className,
-                "<T:Ljava/lang/Object;E:Lnet/gudenau/events/Event<TT;>;>Ljava/lang/Object;Lnet/gudenau/events/impl/EventConsumer<TT;TE;>;",
-                "java/lang/Object",
-                new String[]{ "net/gudenau/events/impl/EventConsumer" }
-            );
-            
-            for(int i = 0; i < eventCount; i++){
-                writer.visitField(ACC_PRIVATE | ACC_FINAL, "consumer" + i, "Ljava/util/function/Consumer;", "Ljava/util/function/Consumer<TE;>;", null);
-            }
-            
-            { // <init>
-                StringBuilder initDescriptor = new StringBuilder("(");
-                StringBuilder initSignature = new StringBuilder("(");
-                
-                for(int i = 0; i < eventCount; i++){
-                    initDescriptor.append("Ljava/util/function/Consumer;");
-                    initSignature.append("Ljava/util/function/Consumer<TE;>;");
-                }
-                
-                initDescriptor.append(")V");
-                initSignature.append(")V");
-                
-                MethodVisitor method = writer.visitMethod(ACC_PUBLIC, "<init>", initDescriptor.toString(), initSignature.toString(), null);
-                method.visitCode();
-                
-                Label start = new Label();
-                method.visitLabel(start);
-                
-                method.visitVarInsn(ALOAD, 0);
-                method.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
-                
-                for(int i = 0; i < eventCount; i++){
-                    method.visitVarInsn(ALOAD, 0);
-                    method.visitVarInsn(ALOAD, i + 1);
-                    method.visitFieldInsn(PUTFIELD, className, "consumer" + i, "Ljava/util/function/Consumer;");
-                }
-                
-                method.visitInsn(RETURN);
-                
-                Label end = new Label();
-                method.visitLabel(end);
-                
-                method.visitLocalVariable("this", "L" + className + ";", null, start, end, 0);
-                for(int i = 0; i < eventCount; i++){
-                    method.visitLocalVariable("consumer" + i, "Ljava/util/function/Consumer;", "L" + className + "<TT;TE;>;", start, end, i + 1);
-                }
-                
-                method.visitMaxs(2, eventCount + 1);
-                method.visitEnd();
-            }
-            
-            { // consumeEvent(Event)
-                MethodVisitor method = writer.visitMethod(ACC_PUBLIC | ACC_FINAL, "consumeEvent", "(Lnet/gudenau/events/Event;)V", "(TE;)V", null);
-                
-                Label start = new Label();
-                method.visitLabel(start);
-    
-                for(int i = 0; i < eventCount; i++){
-                    method.visitVarInsn(ALOAD, 0);
-                    method.visitFieldInsn(GETFIELD, className, "consumer" + i, "Ljava/util/function/Consumer;");
-                    method.visitVarInsn(ALOAD, 1);
-                    method.visitMethodInsn(INVOKEINTERFACE, "java/util/function/Consumer", "accept", "(Ljava/lang/Object;)V", true);
-                    if(cancelable && i < eventCount - 1){
-                        method.visitVarInsn(ALOAD, 1);
-                        method.visitMethodInsn(INVOKEVIRTUAL, "net/gudenau/events/Event", "wasCanceled", "()V", false);
-                        Label jump = new Label();
-                        method.visitJumpInsn(IFEQ, jump);
-                        method.visitInsn(RETURN);
-                        method.visitLabel(jump);
-                        method.visitFrame(F_SAME, 0, null, 0, null);
-                    }
-                    
-                    method.visitInsn(RETURN);
-                    
-                    Label end = new Label();
-                    method.visitLabel(end);
-                    
-                    method.visitLocalVariable("this", "L" + className + ";", null, start, end, 0);
-                    method.visitLocalVariable("event", "Lnet/gudenau/events/Event;", "L" + className + "<TT;TE;>;", start, end, 1);
-                    
-                    method.visitMaxs(2, 2);
-                    method.visitEnd();
-                }
-            }
-            
-            byte[] bytecode = writer.toByteArray();
-            return defineClass(name, bytecode, 0, bytecode.length);
+    private void traceInvalidated(@Nullable Class<?> type, String reason){
+        if(type != null && EventTracer.active){
+            EventTracer.INSTANCE.handlersInvalidated(type, reason);
         }
-    };
+    }
     
     /**
-     * Generates a new class.
-     *
-     * All this does is call our special ClassLoader.
+     * Creates a new event consumer for this dispatcher.
      *
-     * @param name The name of the class
+     * @param cancelable Weather or not the event is cancelable
      *
-     * @return The new class
+     * @return The event new consumer
      */
-    private Class<?> generateClass(String name){
-        try{
-            return AccessController.doPrivileged((PrivilegedExceptionAction<Class<?>>)()->
-                classLoader.loadClass(name)
-            );
-        }catch(Exception e){
-            throw new RuntimeException("Failed to generate handler class: " + name.substring(name.lastIndexOf('.') + 1), e);
+    @SuppressWarnings("unchecked")
+    private EventConsumer<T, E> createConsumer(boolean cancelable){
+        Consumer<E>[] handlers = this.handlers.toArray(Consumer[]::new);
+        if(!cancelable && parallelPool != null){
+            return new ParallelConsumer<>(handlers, parallelPool);
         }
+        return ConsumerGenerator.createConsumer(handlers, cancelable);
     }
 }
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventCodec;
+import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.EventJournal;
+import net.gudenau.events.ValueCodec;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static net.gudenau.events.impl.JournalLayout.*;
+
+/**
+ * Appends records to the current segment of a journal.
+ *
+ * Events are encoded into a thread local scratch buffer before they are dispatched, so the dispatch itself happens
+ * without holding any journal locks. Only copying the finished record into the segment is serialized. Handlers can
+ * dispatch recorded events themselves, every level of nesting gets its own scratch buffer.
+ */
+public final class EventJournalImpl implements EventJournal{
+    private final Path directory;
+    private final int segmentSize;
+    private final int scratchSize;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+    private final MapLocker<Class<? extends Event<?>>, Binding<?, ?>> bindings = MapLocker.create();
+    private final long epochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    private final long startNanos = System.nanoTime();
+    
+    private final Lock appendLock = new ReentrantLock();
+    private int segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int position;
+    // Written under the append lock, read without it so a closed journal can be skipped.
+    private volatile boolean closed = false;
+    
+    private EventJournalImpl(Path directory, int segmentSize){
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.scratchSize = segmentSize - SEGMENT_HEADER_SIZE - RECORD_HEADER_SIZE;
+    }
+    
+    @NotNull
+    public static EventJournalImpl open(@NotNull Path directory, int segmentSize) throws IOException{
+        checkSegmentSize(segmentSize);
+        Files.createDirectories(directory);
+        
+        EventJournalImpl journal = new EventJournalImpl(directory, segmentSize);
+        List<Path> segments = segments(directory);
+        if(segments.isEmpty()){
+            journal.openSegment(0);
+        }else{
+            Path last = segments.get(segments.size() - 1);
+            int index = segmentIndex(last);
+            if(Files.size(last) == segmentSize){
+                journal.resumeSegment(index);
+            }else{
+                journal.openSegment(index + 1);
+            }
+        }
+        return journal;
+    }
+    
+    private void openSegment(int index) throws IOException{
+        FileChannel channel = FileChannel.open(segmentPath(directory, index), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try{
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            segment.putInt(VERSION_OFFSET, VERSION);
+            segment.putInt(MAGIC_OFFSET, MAGIC);
+            useSegment(index, channel, segment, SEGMENT_HEADER_SIZE);
+        }catch(IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+    
+    private void resumeSegment(int index) throws IOException{
+        FileChannel channel = FileChannel.open(segmentPath(directory, index), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try{
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            if(!isValid(segment)){
+                throw new IOException("Journal segment " + index + " is corrupt");
+            }
+            // Skip the complete records, anything after them was cut off by a crash.
+            int position = SEGMENT_HEADER_SIZE;
+            int length;
+            while((length = recordLength(segment, position)) != 0){
+                position += RECORD_TYPE_OFFSET + length;
+            }
+            // Clear the cut off record, records appended after this must not run into its stale bytes.
+            int offset = position;
+            for(; offset + Long.BYTES <= segmentSize; offset += Long.BYTES){
+                segment.putLong(offset, 0);
+            }
+            for(; offset < segmentSize; offset++){
+                segment.put(offset, (byte)0);
+            }
+            useSegment(index, channel, segment, position);
+        }catch(IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+    
+    private void useSegment(int index, FileChannel channel, MappedByteBuffer segment, int position) throws IOException{
+        if(this.channel != null){
+            this.channel.close();
+        }
+        this.segmentIndex = index;
+        this.channel = channel;
+        this.segment = segment;
+        this.position = position;
+    }
+    
+    @Override
+    public <T, E extends Event<T>> void record(@NotNull Class<E> type, @NotNull EventCodec<E> codec){
+        addBinding(type, new Binding<>(Utils.typeId(type), codec, null));
+    }
+    
+    @Override
+    public <T, E extends Event<T>> void record(@NotNull Class<E> type, @NotNull EventCodec<E> codec, @NotNull ValueCodec<T> resultCodec){
+        addBinding(type, new Binding<>(Utils.typeId(type), codec, resultCodec));
+    }
+    
+    private void addBinding(Class<? extends Event<?>> type, Binding<?, ?> binding){
+        appendLock.lock();
+        try{
+            for(Binding<?, ?> existing : bindings.values()){
+                if(existing.id == binding.id){
+                    throw new IllegalStateException("Event " + type.getSimpleName() + " or an event with the same id is already recorded");
+                }
+            }
+            bindings.putIfAbsent(type, binding);
+        }finally{
+            appendLock.unlock();
+        }
+    }
+    
+    /**
+     * Checks if an event type is recorded by this journal.
+     *
+     * @param type The event type
+     *
+     * @return True if the type is recorded
+     */
+    boolean records(@NotNull Class<? extends Event<?>> type){
+        return !closed && bindings.get(type) != null;
+    }
+    
+    /**
+     * Dispatches an event and records it if its type is recorded and this journal is still open.
+     *
+     * @param dispatcher The dispatcher of the event
+     * @param event The event
+     *
+     * @return The result of the event
+     *
+     * @throws IllegalArgumentException If the encoded event is larger than a segment
+     */
+    @SuppressWarnings("unchecked")
+    <T, E extends Event<T>> Optional<T> dispatch(@NotNull EventDispatcher<T, E> dispatcher, @NotNull E event){
+        Binding<T, E> binding = (Binding<T, E>)bindings.get((Class<E>)event.getClass());
+        if(binding == null || closed){
+            return dispatcher.dispatchEvent(event);
+        }
+        
+        Scratch scratch = this.scratch.get();
+        ByteBuffer buffer = scratch.acquire(scratchSize);
+        try{
+            try{
+                binding.codec.encode(event, buffer);
+            }catch(BufferOverflowException e){
+                throw new IllegalArgumentException("Event " + event.getClass().getSimpleName() + " does not fit in a journal segment", e);
+            }
+            int inputLength = buffer.position();
+            long timestamp = epochNanos + (System.nanoTime() - startNanos);
+            
+            Optional<T> result = dispatcher.dispatchEvent(event);
+            
+            byte flags = 0;
+            if(event.wasCanceled()){
+                flags |= FLAG_CANCELED;
+            }
+            if(event.hasValue()){
+                flags |= FLAG_HAS_VALUE;
+            }
+            if(binding.resultCodec != null && result.isPresent()){
+                try{
+                    binding.resultCodec.encode(result.get(), buffer);
+                    flags |= FLAG_RESULT;
+                }catch(BufferOverflowException e){
+                    // The event was already dispatched, keep the record without the result.
+                    buffer.position(inputLength);
+                }
+            }
+            buffer.flip();
+            append(binding.id, timestamp, flags, inputLength, buffer);
+            return result;
+        }finally{
+            scratch.release();
+        }
+    }
+    
+    private void append(int id, long timestamp, byte flags, int inputLength, ByteBuffer data){
+        int length = RECORD_HEADER_SIZE - RECORD_TYPE_OFFSET + data.remaining();
+        appendLock.lock();
+        try{
+            if(closed){
+                // Closed while the event was dispatched, it already ran so only the record is dropped.
+                return;
+            }
+            if(position + RECORD_TYPE_OFFSET + length > segmentSize){
+                openSegment(segmentIndex + 1);
+            }
+            int record = position;
+            segment.putInt(record + RECORD_TYPE_OFFSET, id);
+            segment.putLong(record + RECORD_TIMESTAMP_OFFSET, timestamp);
+            segment.put(record + RECORD_FLAGS_OFFSET, flags);
+            segment.putInt(record + RECORD_INPUT_LENGTH_OFFSET, inputLength);
+            segment.position(record + RECORD_HEADER_SIZE);
+            segment.put(data);
+            Utils.storeFence();
+            segment.putInt(record + RECORD_LENGTH_OFFSET, length);
+            position = record + RECORD_TYPE_OFFSET + length;
+        }catch(IOException e){
+            throw new RuntimeException("Failed to create journal segment " + (segmentIndex + 1), e);
+        }finally{
+            appendLock.unlock();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException{
+        appendLock.lock();
+        try{
+            if(!closed){
+                closed = true;
+                segment.force();
+                channel.close();
+            }
+        }finally{
+            appendLock.unlock();
+        }
+    }
+    
+    /**
+     * The scratch buffers of a thread, one for every level of nested dispatches.
+     */
+    private static final class Scratch{
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private int depth = 0;
+        
+        ByteBuffer acquire(int size){
+            if(depth == buffers.size()){
+                buffers.add(ByteBuffer.allocate(size));
+            }
+            ByteBuffer buffer = buffers.get(depth++);
+            buffer.clear();
+            return buffer;
+        }
+        
+        void release(){
+            depth--;
+        }
+    }
+    
+    static final class Binding<T, E extends Event<T>>{
+        final int id;
+        final EventCodec<E> codec;
+        @Nullable
+        final ValueCodec<T> resultCodec;
+        
+        Binding(int id, EventCodec<E> codec, @Nullable ValueCodec<T> resultCodec){
+            this.id = id;
+            this.codec = codec;
+            this.resultCodec = resultCodec;
+        }
+    }
+}
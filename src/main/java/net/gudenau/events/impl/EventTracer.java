@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events.impl;
+
+/**
+ * Hooks for tracing the internals of the event system, the events show up in JDK Flight Recorder on Java 11 and newer.
+ *
+ * The real implementation lives in the Java 11 part of the multi-release jar and is loaded reflectively, everywhere
+ * else these hooks do nothing. Callers check {@link #active} before calling a hook, it is only true while a recording
+ * is running so tracing costs a single volatile read otherwise.
+ */
+class EventTracer{
+    /**
+     * True while a recording is running.
+     */
+    static volatile boolean active = false;
+    
+    static final EventTracer INSTANCE = load();
+    
+    private static EventTracer load(){
+        try{
+            Class<?> klass = Class.forName("net.gudenau.events.impl.JfrEventTracer");
+            return (EventTracer)klass.getDeclaredConstructor().newInstance();
+        }catch(ReflectiveOperationException | LinkageError e){
+            // Java 8, or a JVM without JFR.
+            return new EventTracer();
+        }
+    }
+    
+    /**
+     * Starts timing a dispatch.
+     *
+     * @return The token to pass to {@link #endDispatch(Object, Class, int)}, or null
+     */
+    Object beginDispatch(){
+        return null;
+    }
+    
+    /**
+     * Finishes timing a dispatch, it is only recorded when it took longer than the threshold.
+     *
+     * @param token The token from {@link #beginDispatch()}
+     * @param type The type of the event
+     * @param handlerCount The amount of handlers that where called
+     */
+    void endDispatch(Object token, Class<?> type, int handlerCount){}
+    
+    /**
+     * Starts timing the generation of a consumer class.
+     *
+     * @return The token to pass to {@link #endGeneration(Object, String, int)}, or null
+     */
+    Object beginGeneration(){
+        return null;
+    }
+    
+    /**
+     * Finishes timing the generation of a consumer class.
+     *
+     * @param token The token from {@link #beginGeneration()}
+     * @param className The name of the generated class
+     * @param bytecodeSize The size of the generated class file
+     */
+    void endGeneration(Object token, String className, int bytecodeSize){}
+    
+    /**
+     * Records that the consumer of a dispatcher was thrown away.
+     *
+     * @param type The type of the event the consumer was generated for
+     * @param reason Why the consumer was thrown away
+     */
+    void handlersInvalidated(Class<?> type, String reason){}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events.impl;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.HandlerGroup;
+import net.gudenau.events.ResultCache;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A dispatcher that can not be changed, returned by {@link EventDispatcher#freeze()}.
+ *
+ * The consumer is final and there are no locks, so once this is in a final field the JIT can inline the whole chain.
+ * A result cache that was enabled before freezing is kept, the handlers can not change so it is only cleared by hand.
+ */
+final class FrozenEventDispatcher<T, E extends Event<T>> implements EventDispatcher<T, E>{
+    private final EventConsumer<T, E> consumer;
+    private final int handlerCount;
+    @Nullable
+    private final ResultCacheImpl<T, E> resultCache;
+    
+    FrozenEventDispatcher(EventConsumer<T, E> consumer, int handlerCount, @Nullable ResultCacheImpl<T, E> resultCache){
+        this.consumer = consumer;
+        this.handlerCount = handlerCount;
+        this.resultCache = resultCache;
+    }
+    
+    @Override
+    public void registerHandler(@NotNull Consumer<E> handler){
+        throw new IllegalStateException("Dispatcher is frozen");
+    }
+    
+    @Override
+    public void registerHandler(@NotNull HandlerGroup group, @NotNull Consumer<E> handler){
+        throw new IllegalStateException("Dispatcher is frozen");
+    }
+    
+    @Override
+    public void removeHandler(@NotNull Consumer<E> handler){
+        throw new IllegalStateException("Dispatcher is frozen");
+    }
+    
+    @Override
+    public Optional<T> dispatchEvent(@NotNull E event){
+        ResultCacheImpl<T, E> cache = resultCache;
+        long generation = 0;
+        long groups = 0;
+        if(cache != null){
+            if(cache.apply(event)){
+                return event.getResult();
+            }
+            generation = cache.generation();
+            groups = HandlerGroupImpl.enabledMask();
+        }
+        Object trace = EventTracer.active ? EventTracer.INSTANCE.beginDispatch() : null;
+        consumer.consumeEvent(event);
+        if(trace != null){
+            EventTracer.INSTANCE.endDispatch(trace, event.getClass(), handlerCount);
+        }
+        if(cache != null){
+            cache.store(event, generation, groups);
+        }
+        return event.getResult();
+    }
+    
+    @Override
+    public boolean hasHandlers(){
+        return handlerCount != 0;
+    }
+    
+    @Override
+    public Optional<T> dispatchEvent(@NotNull Supplier<E> factory){
+        return handlerCount == 0 ? Optional.empty() : dispatchEvent(factory.get());
+    }
+    
+    @Override
+    public <V> Optional<T> dispatchEvent(@NotNull Function<? super V, E> factory, V value){
+        return handlerCount == 0 ? Optional.empty() : dispatchEvent(factory.apply(value));
+    }
+    
+    @Override
+    public void dispatchEvents(@NotNull List<E> events){
+        if(resultCache != null){
+            for(E event : events){
+                dispatchEvent(event);
+            }
+            return;
+        }
+        for(E event : events){
+            consumer.consumeEvent(event);
+        }
+    }
+    
+    @Override
+    public void setParallel(@Nullable ForkJoinPool pool){
+        throw new IllegalStateException("Dispatcher is frozen");
+    }
+    
+    @NotNull
+    @Override
+    public ResultCache enableResultCache(int capacity){
+        throw new IllegalStateException("Dispatcher is frozen");
+    }
+    
+    @NotNull
+    @Override
+    public EventDispatcher<T, E> freeze(){
+        return this;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.nio.ByteBuffer;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventCodec;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The base of every class generated by {@link CodecGenerator}.
+ *
+ * Generated classes only implement {@link #write(Object, ByteBuffer)} and {@link #read(ByteBuffer)}, which work on
+ * plain objects so the same classes can be used for events and for objects nested inside of them.
+ */
+@SuppressWarnings("rawtypes")
+public abstract class GeneratedCodec implements EventCodec{
+    protected GeneratedCodec(){}
+    
+    /**
+     * Writes the fields of an object into a buffer.
+     *
+     * @param object The object to write
+     * @param buffer The buffer to write to
+     */
+    public abstract void write(@NotNull Object object, @NotNull ByteBuffer buffer);
+    
+    /**
+     * Creates an object and reads its fields from a buffer.
+     *
+     * @param buffer The buffer to read from
+     *
+     * @return The read object
+     */
+    @NotNull
+    public abstract Object read(@NotNull ByteBuffer buffer);
+    
+    @Override
+    public final void encode(@NotNull Event event, @NotNull ByteBuffer buffer){
+        write(event, buffer);
+    }
+    
+    @NotNull
+    @Override
+    public final Event decode(@NotNull ByteBuffer buffer){
+        return (Event)read(buffer);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events.impl;
+
+import java.util.function.Consumer;
+import net.gudenau.events.Event;
+import net.gudenau.events.HandlerGroup;
+
+/**
+ * A handler that was registered into a {@link HandlerGroupImpl}.
+ *
+ * The generated consumers unwrap these and check the group bit inline, calling the wrapper directly checks the bit as
+ * well so consumers that do not unwrap still behave.
+ */
+final class GroupedHandler<E extends Event<?>> implements Consumer<E>{
+    private final HandlerGroupImpl group;
+    private final Consumer<E> handler;
+    
+    GroupedHandler(HandlerGroupImpl group, Consumer<E> handler){
+        this.group = group;
+        this.handler = handler;
+    }
+    
+    /**
+     * Wraps a handler into a group.
+     *
+     * @param group The group
+     * @param handler The handler
+     * @param <E> The type of the event
+     *
+     * @return The grouped handler
+     */
+    static <E extends Event<?>> GroupedHandler<E> wrap(HandlerGroup group, Consumer<E> handler){
+        if(!(group instanceof HandlerGroupImpl)){
+            throw new IllegalArgumentException("Unsupported handler group implementation " + group.getClass().getName());
+        }
+        return new GroupedHandler<>((HandlerGroupImpl)group, handler);
+    }
+    
+    /**
+     * Checks if a registered handler is the provided handler, or a grouped wrapper of it.
+     *
+     * @param registered The handler that is registered
+     * @param handler The handler that is being removed
+     *
+     * @return True if they match
+     */
+    static boolean matches(Consumer<?> registered, Consumer<?> handler){
+        if(registered.equals(handler)){
+            return true;
+        }
+        return registered instanceof GroupedHandler && ((GroupedHandler<?>)registered).handler.equals(handler);
+    }
+    
+    /**
+     * Gets the bit a handler has to have enabled to be called.
+     *
+     * @param handler The handler
+     *
+     * @return The group bit, or {@link HandlerGroupImpl#ALWAYS_ENABLED} for handlers without a group
+     */
+    static long bitOf(Consumer<?> handler){
+        return handler instanceof GroupedHandler ? ((GroupedHandler<?>)handler).group.getBit() : HandlerGroupImpl.ALWAYS_ENABLED;
+    }
+    
+    /**
+     * Gets the handler to call, without the group wrapper.
+     *
+     * @param handler The handler
+     *
+     * @return The unwrapped handler
+     */
+    static Consumer<?> unwrap(Consumer<?> handler){
+        return handler instanceof GroupedHandler ? ((GroupedHandler<?>)handler).handler : handler;
+    }
+    
+    @Override
+    public void accept(E event){
+        if((HandlerGroupImpl.enabledMask() & group.getBit()) != 0){
+            handler.accept(event);
+        }
+    }
+    
+    @Override
+    public boolean equals(Object object){
+        if(this == object){
+            return true;
+        }
+        if(!(object instanceof GroupedHandler)){
+            return false;
+        }
+        GroupedHandler<?> other = (GroupedHandler<?>)object;
+        return group == other.group && handler.equals(other.handler);
+    }
+    
+    @Override
+    public int hashCode(){
+        return group.hashCode() * 31 + handler.hashCode();
+    }
+}
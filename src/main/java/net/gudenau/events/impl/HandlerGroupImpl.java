@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import net.gudenau.events.HandlerGroup;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The global registry of {@link HandlerGroup}s.
+ *
+ * Every group owns one bit of {@link #ENABLED}. The top bit is never cleared, handlers without a group use it so the
+ * generated consumers can treat every handler the same way.
+ */
+public final class HandlerGroupImpl implements HandlerGroup{
+    /**
+     * The bit of handlers that are not in any group.
+     */
+    static final long ALWAYS_ENABLED = 1L << 63;
+    
+    private static final AtomicLong ENABLED = new AtomicLong(ALWAYS_ENABLED);
+    private static final MapLocker<String, HandlerGroupImpl> GROUPS = MapLocker.create();
+    private static final Lock ALLOCATION_LOCK = new ReentrantLock();
+    private static int nextBit = 0;
+    
+    private final String name;
+    private final long bit;
+    
+    private HandlerGroupImpl(String name, long bit){
+        this.name = name;
+        this.bit = bit;
+    }
+    
+    @NotNull
+    public static HandlerGroup named(@NotNull String name){
+        HandlerGroupImpl group = GROUPS.get(name);
+        if(group != null){
+            return group;
+        }
+        ALLOCATION_LOCK.lock();
+        try{
+            group = GROUPS.get(name);
+            if(group == null){
+                if(nextBit == 63){
+                    List<String> names = new ArrayList<>();
+                    for(HandlerGroupImpl existing : GROUPS.values()){
+                        names.add(existing.name);
+                    }
+                    // Groups are never freed, so list them to make collisions between libraries visible.
+                    throw new IllegalStateException("Can not create handler group " + name + ", the 63 groups of this JVM are taken by " + names);
+                }
+                group = new HandlerGroupImpl(name, 1L << nextBit++);
+                ENABLED.getAndAccumulate(group.bit, (mask, bit)->mask | bit);
+                GROUPS.putIfAbsent(name, group);
+            }
+            return group;
+        }finally{
+            ALLOCATION_LOCK.unlock();
+        }
+    }
+    
+    /**
+     * Gets the mask of enabled groups, this is called by the generated consumers.
+     *
+     * @return The enabled mask
+     */
+    public static long enabledMask(){
+        return ENABLED.get();
+    }
+    
+    long getBit(){
+        return bit;
+    }
+    
+    @NotNull
+    @Override
+    public String getName(){
+        return name;
+    }
+    
+    @Override
+    public boolean isEnabled(){
+        return (ENABLED.get() & bit) != 0;
+    }
+    
+    @Override
+    public void setEnabled(boolean enabled){
+        if(enabled){
+            ENABLED.getAndAccumulate(bit, (mask, bit)->mask | bit);
+        }else{
+            ENABLED.getAndAccumulate(bit, (mask, bit)->mask & ~bit);
+        }
+    }
+    
+    @Override
+    public String toString(){
+        return "HandlerGroup[" + name + "]";
+    }
+}
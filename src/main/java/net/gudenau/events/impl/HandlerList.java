@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import net.gudenau.events.Event;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An immutable, interned list of handlers together with its generated consumers.
+ *
+ * Dispatchers that end up with the same handlers in the same order share a single instance, and with it the generated
+ * consumers. Lists that are no longer used by any dispatcher are dropped from the intern table by the GC. The intern
+ * table is striped by hash, so dispatchers with unrelated handlers do not wait on each other.
+ *
+ * A frozen list can not be changed anymore, it is interned separately from the mutable list with the same handlers.
+ */
+final class HandlerList<T, E extends Event<T>>{
+    private static final Stripe[] STRIPES = createStripes();
+    private static final HandlerList<?, ?> EMPTY = new HandlerList<>(new Consumer<?>[0], false);
+    
+    private final Consumer<E>[] handlers;
+    private final boolean frozen;
+    private final int hash;
+    
+    // Generated on demand, racing threads at worst generate the same consumer twice.
+    private volatile EventConsumer<T, E> consumer;
+    private volatile EventConsumer<T, E> cancelableConsumer;
+    
+    @SuppressWarnings("unchecked")
+    private HandlerList(Consumer<?>[] handlers, boolean frozen){
+        this.handlers = (Consumer<E>[])handlers;
+        this.frozen = frozen;
+        hash = Arrays.hashCode(handlers) * 31 + (frozen ? 1 : 0);
+    }
+    
+    @SuppressWarnings("unchecked")
+    @NotNull
+    static <T, E extends Event<T>> HandlerList<T, E> empty(){
+        return (HandlerList<T, E>)EMPTY;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T, E extends Event<T>> HandlerList<T, E> intern(Consumer<?>[] handlers, boolean frozen){
+        if(handlers.length == 0 && !frozen){
+            return empty();
+        }
+        HandlerList<T, E> list = new HandlerList<>(handlers, frozen);
+        int hash = list.hash;
+        Stripe stripe = STRIPES[(hash ^ (hash >>> 16)) & (STRIPES.length - 1)];
+        stripe.lock.lock();
+        try{
+            WeakReference<HandlerList<?, ?>> reference = stripe.interned.get(list);
+            HandlerList<?, ?> existing = reference == null ? null : reference.get();
+            if(existing != null){
+                return (HandlerList<T, E>)existing;
+            }
+            stripe.interned.put(list, new WeakReference<>(list));
+            return list;
+        }finally{
+            stripe.lock.unlock();
+        }
+    }
+    
+    private static Stripe[] createStripes(){
+        // A power of two with a few stripes per CPU.
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        Stripe[] stripes = new Stripe[count];
+        for(int i = 0; i < count; i++){
+            stripes[i] = new Stripe();
+        }
+        return stripes;
+    }
+    
+    /**
+     * Gets the list with a handler appended, or this list if it already contains the handler.
+     *
+     * @param handler The handler to add
+     *
+     * @return The new list
+     */
+    @NotNull
+    HandlerList<T, E> with(@NotNull Consumer<E> handler){
+        checkMutable();
+        for(Consumer<E> existing : handlers){
+            if(existing.equals(handler)){
+                return this;
+            }
+        }
+        Consumer<?>[] handlers = Arrays.copyOf(this.handlers, this.handlers.length + 1);
+        handlers[handlers.length - 1] = handler;
+        return intern(handlers, false);
+    }
+    
+    /**
+     * Gets the list with a handler removed, or this list if it does not contain the handler.
+     *
+     * @param handler The handler to remove
+     *
+     * @return The new list
+     */
+    @NotNull
+    HandlerList<T, E> without(@NotNull Consumer<E> handler){
+        checkMutable();
+        for(int i = 0; i < handlers.length; i++){
+            if(GroupedHandler.matches(handlers[i], handler)){
+                Consumer<?>[] handlers = new Consumer<?>[this.handlers.length - 1];
+                System.arraycopy(this.handlers, 0, handlers, 0, i);
+                System.arraycopy(this.handlers, i + 1, handlers, i, handlers.length - i);
+                return intern(handlers, false);
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * Gets the frozen list with the same handlers.
+     *
+     * @return The frozen list
+     */
+    @NotNull
+    HandlerList<T, E> frozen(){
+        return frozen ? this : intern(handlers, true);
+    }
+    
+    private void checkMutable(){
+        if(frozen){
+            throw new IllegalStateException("Dispatcher is frozen");
+        }
+    }
+    
+    int size(){
+        return handlers.length;
+    }
+    
+    /**
+     * Gets the consumer for these handlers, generating it if required.
+     *
+     * @param cancelable Weather or not the event is cancelable
+     *
+     * @return The consumer
+     */
+    @NotNull
+    EventConsumer<T, E> consumer(boolean cancelable){
+        EventConsumer<T, E> consumer = cancelable ? cancelableConsumer : this.consumer;
+        if(consumer == null){
+            consumer = ConsumerGenerator.createConsumer(handlers, cancelable);
+            if(cancelable){
+                cancelableConsumer = consumer;
+            }else{
+                this.consumer = consumer;
+            }
+        }
+        return consumer;
+    }
+    
+    @Override
+    public boolean equals(Object object){
+        if(this == object){
+            return true;
+        }
+        if(!(object instanceof HandlerList)){
+            return false;
+        }
+        HandlerList<?, ?> other = (HandlerList<?, ?>)object;
+        return hash == other.hash && frozen == other.frozen && Arrays.equals(handlers, other.handlers);
+    }
+    
+    @Override
+    public int hashCode(){
+        return hash;
+    }
+    
+    /**
+     * A part of the intern table with its own lock.
+     */
+    private static final class Stripe{
+        private final Lock lock = new ReentrantLock();
+        private final Map<HandlerList<?, ?>, WeakReference<HandlerList<?, ?>>> interned = new WeakHashMap<>();
+    }
+}
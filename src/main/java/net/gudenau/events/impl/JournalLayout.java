@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The layout of an {@link net.gudenau.events.EventJournal} segment.
+ *
+ * Segment header:
+ *  - int magic
+ *  - int version
+ *  - 8 reserved bytes
+ *
+ * Record:
+ *  - int length of the rest of the record, 0 marks the end of the segment
+ *  - int type id
+ *  - long timestamp in nanoseconds since the unix epoch
+ *  - byte flags
+ *  - int length of the encoded event
+ *  - encoded event
+ *  - encoded result, if {@link #FLAG_RESULT} is set
+ *
+ * The length of a record is written last, a record with a length is always complete.
+ */
+final class JournalLayout{
+    static final int MAGIC = 0x6745764A; // gEvJ
+    static final int VERSION = 1;
+    
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SEGMENT_HEADER_SIZE = 16;
+    
+    static final int RECORD_LENGTH_OFFSET = 0;
+    static final int RECORD_TYPE_OFFSET = 4;
+    static final int RECORD_TIMESTAMP_OFFSET = 8;
+    static final int RECORD_FLAGS_OFFSET = 16;
+    static final int RECORD_INPUT_LENGTH_OFFSET = 17;
+    static final int RECORD_HEADER_SIZE = 21;
+    
+    static final byte FLAG_CANCELED = 1;
+    static final byte FLAG_HAS_VALUE = 2;
+    static final byte FLAG_RESULT = 4;
+    
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    
+    private JournalLayout(){}
+    
+    static void checkSegmentSize(int segmentSize){
+        if(segmentSize < SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + 1){
+            throw new IllegalArgumentException("Segment size " + segmentSize + " is too small");
+        }
+    }
+    
+    static Path segmentPath(Path directory, int index){
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+    
+    static int segmentIndex(Path segment){
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    /**
+     * Lists the segments of a journal in the order they where written.
+     *
+     * @param directory The journal directory
+     *
+     * @return The sorted segments
+     *
+     * @throws IOException If the directory could not be listed
+     */
+    static List<Path> segments(Path directory) throws IOException{
+        List<Path> segments = new ArrayList<>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)){
+            for(Path path : stream){
+                segments.add(path);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+    
+    static boolean isValid(ByteBuffer segment){
+        return segment.capacity() >= SEGMENT_HEADER_SIZE &&
+            segment.getInt(MAGIC_OFFSET) == MAGIC &&
+            segment.getInt(VERSION_OFFSET) == VERSION;
+    }
+    
+    /**
+     * Finds the next record in a segment.
+     *
+     * @param segment The segment
+     * @param position The position of the current record
+     *
+     * @return The length of the current record, or 0 if there are no more complete records
+     */
+    static int recordLength(ByteBuffer segment, int position){
+        if(position + RECORD_TYPE_OFFSET > segment.capacity()){
+            return 0;
+        }
+        int length = segment.getInt(position + RECORD_LENGTH_OFFSET);
+        if(length < RECORD_HEADER_SIZE - RECORD_TYPE_OFFSET || length > segment.capacity() - position - RECORD_TYPE_OFFSET){
+            return 0;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventBus;
+import net.gudenau.events.EventCodec;
+import net.gudenau.events.EventJournal;
+import net.gudenau.events.ValueCodec;
+import org.jetbrains.annotations.NotNull;
+
+import static net.gudenau.events.impl.JournalLayout.*;
+
+/**
+ * Reads the segments of a journal in order and dispatches the records.
+ */
+public final class JournalReplayer implements EventJournal.Replayer{
+    /**
+     * How far ahead of a recorded timestamp the replayer stops parking and starts spinning.
+     */
+    private static final long SPIN_NANOS = 100_000;
+    
+    private final Path directory;
+    private final Lock lock = new ReentrantLock();
+    private final Map<Integer, EventJournalImpl.Binding<?, ?>> bindings = Utils.createMap();
+    
+    public JournalReplayer(@NotNull Path directory){
+        this.directory = directory;
+    }
+    
+    @Override
+    public <T, E extends Event<T>> void bind(@NotNull Class<E> type, @NotNull EventCodec<E> codec){
+        addBinding(type, new EventJournalImpl.Binding<>(Utils.typeId(type), codec, null));
+    }
+    
+    @Override
+    public <T, E extends Event<T>> void bind(@NotNull Class<E> type, @NotNull EventCodec<E> codec, @NotNull ValueCodec<T> resultCodec){
+        addBinding(type, new EventJournalImpl.Binding<>(Utils.typeId(type), codec, resultCodec));
+    }
+    
+    private void addBinding(Class<?> type, EventJournalImpl.Binding<?, ?> binding){
+        lock.lock();
+        try{
+            if(bindings.putIfAbsent(binding.id, binding) != null){
+                throw new IllegalStateException("Event " + type.getSimpleName() + " or an event with the same id was already bound");
+            }
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    @NotNull
+    @Override
+    public EventJournal.ReplayResult replay(@NotNull EventBus bus, @NotNull EventJournal.Pacing pacing) throws IOException{
+        lock.lock();
+        try{
+            Replay replay = new Replay(bus, pacing == EventJournal.Pacing.RECORDED);
+            for(Path path : segments(directory)){
+                try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+                    MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    if(!isValid(segment)){
+                        throw new IOException("Journal segment " + path.getFileName() + " is corrupt");
+                    }
+                    replay.segment(segment);
+                }
+            }
+            return new EventJournal.ReplayResult(replay.events, replay.skipped, replay.mismatches, System.nanoTime() - replay.start);
+        }finally{
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * The state of a single replay.
+     */
+    private final class Replay{
+        private final EventBus bus;
+        private final boolean paced;
+        private final long start = System.nanoTime();
+        private long firstTimestamp = -1;
+        private long events = 0;
+        private long skipped = 0;
+        private long mismatches = 0;
+        
+        private Replay(EventBus bus, boolean paced){
+            this.bus = bus;
+            this.paced = paced;
+        }
+        
+        private void segment(ByteBuffer segment){
+            ByteBuffer view = segment.duplicate();
+            int position = SEGMENT_HEADER_SIZE;
+            int length;
+            while((length = recordLength(segment, position)) != 0){
+                EventJournalImpl.Binding<?, ?> binding = bindings.get(segment.getInt(position + RECORD_TYPE_OFFSET));
+                if(binding == null){
+                    skipped++;
+                }else{
+                    if(paced){
+                        pace(segment.getLong(position + RECORD_TIMESTAMP_OFFSET));
+                    }
+                    int inputStart = position + RECORD_HEADER_SIZE;
+                    int resultStart = inputStart + segment.getInt(position + RECORD_INPUT_LENGTH_OFFSET);
+                    view.limit(resultStart).position(inputStart);
+                    byte flags = segment.get(position + RECORD_FLAGS_OFFSET);
+                    if(!record(binding, view, flags, resultStart, position + RECORD_TYPE_OFFSET + length)){
+                        mismatches++;
+                    }
+                    events++;
+                }
+                position += RECORD_TYPE_OFFSET + length;
+            }
+        }
+        
+        /**
+         * Dispatches a single record.
+         *
+         * @return True if the outcome matched the recording
+         */
+        private <T, E extends Event<T>> boolean record(EventJournalImpl.Binding<T, E> binding, ByteBuffer view, byte flags, int resultStart, int end){
+            E event = binding.codec.decode(view);
+            Optional<T> result = bus.dispatchEvent(event);
+            if(event.wasCanceled() != ((flags & FLAG_CANCELED) != 0) || event.hasValue() != ((flags & FLAG_HAS_VALUE) != 0)){
+                return false;
+            }
+            if(binding.resultCodec == null || (flags & FLAG_RESULT) == 0){
+                return true;
+            }
+            view.limit(end).position(resultStart);
+            T recorded = binding.resultCodec.decode(view);
+            return result.isPresent() && recorded.equals(result.get());
+        }
+        
+        private void pace(long timestamp){
+            if(firstTimestamp == -1){
+                firstTimestamp = timestamp;
+                return;
+            }
+            long deadline = start + (timestamp - firstTimestamp);
+            long remaining;
+            while((remaining = deadline - System.nanoTime()) > 0){
+                if(remaining > SPIN_NANOS){
+                    LockSupport.parkNanos(remaining - SPIN_NANOS);
+                }
+            }
+        }
+    }
+}
@@ -19,6 +19,8 @@
 
 package net.gudenau.events.impl;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -81,4 +83,12 @@ final class MapLocker<K, V>{
         readLock.unlock();
         return value;
     }
+    
+    @NotNull
+    public List<V> values(){
+        readLock.lock();
+        List<V> values = new ArrayList<>(map.values());
+        readLock.unlock();
+        return values;
+    }
 }
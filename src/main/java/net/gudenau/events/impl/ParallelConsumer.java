@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.gudenau.events.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import net.gudenau.events.Event;
+
+/**
+ * Runs the handlers of a non-cancelable event on a {@link ForkJoinPool}.
+ *
+ * The cost of every handler is sampled on a random subset of the dispatches, handlers that are expensive enough get
+ * spread across tasks with a longest-processing-time-first split and everything else runs on the dispatching thread.
+ * If there is nothing worth forking the handlers just run inline, so cheap handlers pay nothing but the sampling.
+ */
+final class ParallelConsumer<T, E extends Event<T>> implements EventConsumer<T, E>{
+    /**
+     * Handlers that take at least this long are worth running on another thread.
+     */
+    private static final long HEAVY_NANOS = 20_000;
+    
+    /**
+     * How often the handlers get timed on average, must be a power of two.
+     */
+    private static final int SAMPLE_INTERVAL = 256;
+    
+    /**
+     * The weight of a new sample in the average cost of a handler, as a shift.
+     */
+    private static final int SAMPLE_WEIGHT = 2;
+    
+    private final Consumer<E>[] handlers;
+    private final ForkJoinPool pool;
+    private final long[] costs;
+    
+    // Sampling is approximate, concurrent samples race on the costs and the plan. A lost update only makes the
+    // estimate a bit older.
+    private volatile Plan plan;
+    
+    ParallelConsumer(Consumer<E>[] handlers, ForkJoinPool pool){
+        this.handlers = handlers;
+        this.pool = pool;
+        costs = new long[handlers.length];
+        
+        int[] all = new int[handlers.length];
+        Arrays.setAll(all, (index)->index);
+        plan = new Plan(all, new int[0][]);
+    }
+    
+    @Override
+    public void consumeEvent(E event){
+        // Random per thread instead of a shared counter, so dispatching threads never write the same cache line.
+        boolean sample = (ThreadLocalRandom.current().nextInt() & (SAMPLE_INTERVAL - 1)) == 0;
+        Plan plan = this.plan;
+        
+        int[][] forked = plan.forked;
+        if(forked.length == 0){
+            run(plan.inline, event, sample);
+        }else{
+            ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[forked.length];
+            for(int i = 0; i < forked.length; i++){
+                int[] indices = forked[i];
+                tasks[i] = ForkJoinTask.adapt(()->run(indices, event, sample));
+                if(ForkJoinTask.getPool() == pool){
+                    tasks[i].fork();
+                }else{
+                    pool.execute(tasks[i]);
+                }
+            }
+            try{
+                run(plan.inline, event, sample);
+            }finally{
+                for(ForkJoinTask<?> task : tasks){
+                    task.join();
+                }
+            }
+        }
+        
+        if(sample){
+            this.plan = createPlan();
+        }
+    }
+    
+    private void run(int[] indices, E event, boolean sample){
+        if(!sample){
+            for(int index : indices){
+                handlers[index].accept(event);
+            }
+            return;
+        }
+        for(int index : indices){
+            long start = System.nanoTime();
+            handlers[index].accept(event);
+            long cost = System.nanoTime() - start;
+            long average = costs[index];
+            costs[index] = average == 0 ? cost : average + ((cost - average) >> SAMPLE_WEIGHT);
+        }
+    }
+    
+    /**
+     * Splits the handlers based on their current cost.
+     *
+     * @return The new plan
+     */
+    private Plan createPlan(){
+        List<Integer> heavy = new ArrayList<>();
+        List<Integer> light = new ArrayList<>();
+        long lightCost = 0;
+        for(int i = 0; i < handlers.length; i++){
+            if(costs[i] >= HEAVY_NANOS){
+                heavy.add(i);
+            }else{
+                light.add(i);
+                lightCost += costs[i];
+            }
+        }
+        
+        int bins = Math.min(pool.getParallelism() + 1, heavy.size() + (light.isEmpty() ? 0 : 1));
+        if(bins <= 1){
+            int[] all = new int[handlers.length];
+            Arrays.setAll(all, (index)->index);
+            return new Plan(all, new int[0][]);
+        }
+        
+        // Bin 0 runs on the dispatching thread and always gets the cheap handlers.
+        List<List<Integer>> assigned = new ArrayList<>(bins);
+        long[] load = new long[bins];
+        for(int i = 0; i < bins; i++){
+            assigned.add(new ArrayList<>());
+        }
+        assigned.get(0).addAll(light);
+        load[0] = lightCost;
+        
+        heavy.sort(Comparator.comparingLong((Integer index)->costs[index]).reversed());
+        for(int index : heavy){
+            int target = 0;
+            for(int i = 1; i < bins; i++){
+                if(load[i] < load[target]){
+                    target = i;
+                }
+            }
+            assigned.get(target).add(index);
+            load[target] += costs[index];
+        }
+        
+        List<int[]> forked = new ArrayList<>();
+        for(int i = 1; i < bins; i++){
+            if(!assigned.get(i).isEmpty()){
+                forked.add(toArray(assigned.get(i)));
+            }
+        }
+        return new Plan(toArray(assigned.get(0)), forked.toArray(new int[0][]));
+    }
+    
+    private static int[] toArray(List<Integer> list){
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    /**
+     * Which handlers run where.
+     */
+    private static final class Plan{
+        private final int[] inline;
+        private final int[][] forked;
+        
+        private Plan(int[] inline, int[][] forked){
+            this.inline = inline;
+            this.forked = forked;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2021 gudenau
+ *
+ * This file is part of gudEvents.
+ * 
+ * gudEvents is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * gudEvents is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with gudEvents.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.gudenau.events.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import net.gudenau.events.Event;
+import net.gudenau.events.ResultCache;
+
+/**
+ * A least recently used cache of event results, keyed on the original value of the events.
+ *
+ * The cache is split into segments by the hash of the key, every segment is a small LRU cache with its own lock so
+ * hits on different keys rarely contend. Eviction is only least recently used within a segment, which is close enough
+ * for a cache.
+ *
+ * Every change of the handlers bumps the generation, a dispatch that started before the change does not store its
+ * result afterwards. Toggling a {@link net.gudenau.events.HandlerGroup} changes which handlers run without touching the
+ * dispatchers, so every result also remembers the enabled groups it was created with and only matches those.
+ */
+final class ResultCacheImpl<T, E extends Event<T>> implements ResultCache{
+    private final int capacity;
+    private final Segment<T>[] segments;
+    private final AtomicLong generation = new AtomicLong();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    
+    @SuppressWarnings("unchecked")
+    ResultCacheImpl(int capacity){
+        if(capacity <= 0){
+            throw new IllegalArgumentException("Result cache capacity must be positive");
+        }
+        this.capacity = capacity;
+        
+        // A power of two with a few segments per CPU, but never more segments than results.
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        count = Math.min(count, Integer.highestOneBit(capacity));
+        segments = (Segment<T>[])new Segment<?>[count];
+        for(int i = 0; i < count; i++){
+            segments[i] = new Segment<>(capacity / count + (i < capacity % count ? 1 : 0), evictions);
+        }
+    }
+    
+    private Segment<T> segment(Object key){
+        int hash = key == null ? 0 : key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+    
+    /**
+     * Gets the current generation, pass it to {@link #store(Event, long, long)} after running the handlers.
+     *
+     * @return The generation
+     */
+    long generation(){
+        return generation.get();
+    }
+    
+    /**
+     * Applies the cached result to an event, if there is one.
+     *
+     * @param event The event to complete
+     *
+     * @return True if the result was cached
+     */
+    boolean apply(E event){
+        Object key = event.getOriginalValue().orElse(null);
+        Segment<T> segment = segment(key);
+        segment.lock.lock();
+        Result<T> result = segment.results.get(key);
+        segment.lock.unlock();
+        if(result == null || result.groups != HandlerGroupImpl.enabledMask()){
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        if(result.value != null){
+            event.setValue(result.value);
+        }
+        if(result.canceled){
+            event.cancel();
+        }
+        return true;
+    }
+    
+    /**
+     * Stores the result of a dispatched event.
+     *
+     * @param event The dispatched event
+     * @param generation The generation from before the handlers ran
+     * @param groups The {@link HandlerGroupImpl#enabledMask()} from before the handlers ran
+     */
+    void store(E event, long generation, long groups){
+        Object key = event.getOriginalValue().orElse(null);
+        Result<T> result = new Result<>(event.getValue().orElse(null), event.wasCanceled(), groups);
+        Segment<T> segment = segment(key);
+        segment.lock.lock();
+        // Invalidation bumps the generation before it clears the segments, so a stale result is either rejected here
+        // or cleared afterwards.
+        if(this.generation.get() == generation){
+            segment.results.put(key, result);
+        }
+        segment.lock.unlock();
+    }
+    
+    @Override
+    public long getHitCount(){
+        return hits.sum();
+    }
+    
+    @Override
+    public long getMissCount(){
+        return misses.sum();
+    }
+    
+    @Override
+    public long getEvictionCount(){
+        return evictions.sum();
+    }
+    
+    @Override
+    public long getInvalidationCount(){
+        return invalidations.sum();
+    }
+    
+    @Override
+    public int getSize(){
+        int size = 0;
+        for(Segment<T> segment : segments){
+            segment.lock.lock();
+            size += segment.results.size();
+            segment.lock.unlock();
+        }
+        return size;
+    }
+    
+    @Override
+    public int getCapacity(){
+        return capacity;
+    }
+    
+    @Override
+    public void invalidate(){
+        generation.incrementAndGet();
+        for(Segment<T> segment : segments){
+            segment.lock.lock();
+            segment.results.clear();
+            segment.lock.unlock();
+        }
+        invalidations.increment();
+    }
+    
+    /**
+     * A part of the cache with its own lock and its own share of the capacity.
+     */
+    private static final class Segment<T>{
+        private final Lock lock = new ReentrantLock();
+        private final Map<Object, Result<T>> results;
+        
+        private Segment(int capacity, LongAdder evictions){
+            results = new LinkedHashMap<Object, Result<T>>(16, 0.75F, true){
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Result<T>> eldest){
+                    if(size() > capacity){
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+    
+    private static final class Result<T>{
+        private final T value;
+        private final boolean canceled;
+        private final long groups;
+        
+        private Result(T value, boolean canceled, long groups){
+            this.value = value;
+            this.canceled = canceled;
+            this.groups = groups;
+        }
+    }
+}
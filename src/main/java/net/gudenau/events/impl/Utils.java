@@ -22,6 +22,7 @@ package net.gudenau.events.impl;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
 import java.util.*;
 
 public final class Utils{
@@ -31,10 +32,65 @@ public final class Utils{
     );
     
     private static final MethodHandle Map$init;
+    private static final MethodHandle Unsafe$storeFence;
+    private static final MethodHandle Unsafe$loadFence;
+    
+    /**
+     * Written and read by the fence fallbacks when Unsafe is not around.
+     */
+    private static volatile int fence;
     
     static{
         Map$init = findConstructor(MAP_IMPLEMENTATIONS, MethodType.methodType(void.class))
             .orElseThrow(()->new RuntimeException("Failed to find Map implementation"));
+        
+        MethodType fenceType = MethodType.methodType(void.class);
+        Object unsafe = findUnsafe().orElse(null);
+        Unsafe$storeFence = findFence(unsafe, "storeFence", fenceType)
+            .orElseGet(()->findStatic("volatileStore", fenceType));
+        Unsafe$loadFence = findFence(unsafe, "loadFence", fenceType)
+            .orElseGet(()->findStatic("volatileLoad", fenceType));
+    }
+    
+    /**
+     * Finds the sun.misc.Unsafe instance, if the runtime has one.
+     *
+     * @return The Unsafe instance or empty
+     */
+    static Optional<Object> findUnsafe(){
+        try{
+            Class<?> klass = Class.forName("sun.misc.Unsafe");
+            Field field = klass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return Optional.of(field.get(null));
+        }catch(ReflectiveOperationException | RuntimeException ignored){}
+        return Optional.empty();
+    }
+    
+    private static Optional<MethodHandle> findFence(Object unsafe, String name, MethodType method){
+        if(unsafe == null){
+            return Optional.empty();
+        }
+        try{
+            return Optional.of(MethodHandles.lookup().findVirtual(unsafe.getClass(), name, method).bindTo(unsafe));
+        }catch(ReflectiveOperationException ignored){}
+        return Optional.empty();
+    }
+    
+    private static MethodHandle findStatic(String name, MethodType method){
+        try{
+            return MethodHandles.lookup().findStatic(Utils.class, name, method);
+        }catch(ReflectiveOperationException e){
+            throw new RuntimeException("Failed to find " + name, e);
+        }
+    }
+    
+    private static void volatileStore(){
+        fence = 0;
+    }
+    
+    private static void volatileLoad(){
+        int ignored = fence;
     }
     
     private static Optional<MethodHandle> findConstructor(List<String> owners, MethodType method){
@@ -60,4 +116,37 @@ public final class Utils{
     public static <T> Set<T> createSet(){
         return new HashSet<>();
     }
+    
+    /**
+     * Gets the id of an event type in binary formats, this is stable between JVMs.
+     *
+     * @param type The event type
+     *
+     * @return The id of the type
+     */
+    public static int typeId(Class<?> type){
+        return type.getName().hashCode();
+    }
+    
+    /**
+     * Prevents stores before this call from being reordered with stores after it.
+     */
+    public static void storeFence(){
+        try{
+            Unsafe$storeFence.invokeExact();
+        }catch(Throwable throwable){
+            throw new RuntimeException("Failed to fence", throwable);
+        }
+    }
+    
+    /**
+     * Prevents loads before this call from being reordered with loads after it.
+     */
+    public static void loadFence(){
+        try{
+            Unsafe$loadFence.invokeExact();
+        }catch(Throwable throwable){
+            throw new RuntimeException("Failed to fence", throwable);
+        }
+    }
 }
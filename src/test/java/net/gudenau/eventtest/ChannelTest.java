@@ -0,0 +1,113 @@
+package net.gudenau.eventtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventBus;
+import net.gudenau.events.EventChannel;
+import net.gudenau.events.EventCodec;
+
+/**
+ * Sends events from a child JVM to this one through a ring file.
+ *
+ * The parent creates the ring and opens a reader, then starts a child process that publishes numbered events into the
+ * same file. Afterwards the parent tries to reopen the ring with another size, which has to fail without breaking the
+ * mapping of the reader.
+ */
+public class ChannelTest{
+    private static final int SLOT_COUNT = 1024;
+    private static final int SLOT_SIZE = 64;
+    private static final int EVENT_COUNT = 1000;
+    
+    private ChannelTest(){}
+    
+    public static final class NumberEvent extends Event.NonCancelable<Void>{
+        private int number;
+        
+        public NumberEvent(int number){
+            this.number = number;
+        }
+    }
+    
+    public static void main(String[] args) throws Exception{
+        if(args.length == 2 && args[0].equals("write")){
+            write(Paths.get(args[1]));
+            return;
+        }
+        
+        Path path = Files.createTempFile("gudEvents", ".ring");
+        try{
+            read(path);
+        }finally{
+            Files.deleteIfExists(path);
+        }
+        System.out.println("Channel checks passed");
+    }
+    
+    private static void write(Path path) throws IOException{
+        try(EventChannel.Writer writer = EventChannel.openWriter(path, SLOT_COUNT, SLOT_SIZE)){
+            writer.bind(NumberEvent.class, EventCodec.generate(NumberEvent.class));
+            for(int i = 0; i < EVENT_COUNT; i++){
+                writer.publish(new NumberEvent(i));
+            }
+        }
+    }
+    
+    private static void read(Path path) throws Exception{
+        // Create the ring up front, the reader only sees events that are written after it was opened.
+        Files.delete(path);
+        EventChannel.openWriter(path, SLOT_COUNT, SLOT_SIZE).close();
+        
+        List<Integer> received = new ArrayList<>();
+        EventBus bus = EventBus.createInstance();
+        bus.registerEvent(NumberEvent.class);
+        bus.registerHandler(NumberEvent.class, (event)->received.add(event.number));
+        
+        try(EventChannel.Reader reader = EventChannel.openReader(path, bus)){
+            reader.bind(NumberEvent.class, EventCodec.generate(NumberEvent.class));
+            
+            Process child = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                ChannelTest.class.getName(),
+                "write", path.toString()
+            ).inheritIO().start();
+            
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while(received.size() < EVENT_COUNT && System.nanoTime() - deadline < 0){
+                if(reader.poll() == 0){
+                    Thread.sleep(1);
+                }
+            }
+            check(child.waitFor() == 0, "writer process failed");
+            reader.poll();
+            
+            check(reader.getLostCount() == 0, "reader lost " + reader.getLostCount() + " events");
+            check(received.size() == EVENT_COUNT, "received " + received.size() + " of " + EVENT_COUNT + " events");
+            for(int i = 0; i < EVENT_COUNT; i++){
+                check(received.get(i) == i, "event " + i + " arrived out of order");
+            }
+            
+            long size = Files.size(path);
+            try{
+                EventChannel.openWriter(path, SLOT_COUNT / 2, SLOT_SIZE).close();
+                throw new AssertionError("ring with another size was opened for writing");
+            }catch(IOException expected){
+                // The ring is left alone, so the mapping of the reader stays valid.
+            }
+            check(Files.size(path) == size, "rejected writer resized the ring");
+            reader.poll();
+        }
+    }
+    
+    private static void check(boolean condition, String message){
+        if(!condition){
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package net.gudenau.eventtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventBus;
+
+/**
+ * Checks coalescing on the bus: merging of shared keys, the capacity overflow and flushing.
+ */
+public class CoalescingTest{
+    private CoalescingTest(){}
+    
+    private static final class KeyedEvent extends Event.NonCancelable<Void>{
+        private final int key;
+        private final int value;
+        
+        private KeyedEvent(int key, int value){
+            this.key = key;
+            this.value = value;
+        }
+    }
+    
+    public static void main(String[] args) throws InterruptedException{
+        merging();
+        overflow();
+        flushing();
+        concurrentCapacity();
+        nullMerge();
+        System.out.println("Coalescing checks passed");
+    }
+    
+    private static EventBus createBus(List<KeyedEvent> delivered, int capacity){
+        EventBus bus = EventBus.createInstance();
+        bus.registerEvent(KeyedEvent.class);
+        bus.registerHandler(KeyedEvent.class, delivered::add);
+        bus.<Void, KeyedEvent>registerCoalescing(
+            KeyedEvent.class,
+            (event)->event.key,
+            (staged, posted)->new KeyedEvent(staged.key, staged.value + posted.value),
+            capacity
+        );
+        return bus;
+    }
+    
+    private static void merging(){
+        List<KeyedEvent> delivered = new ArrayList<>();
+        EventBus bus = createBus(delivered, 16);
+        bus.postCoalesced(new KeyedEvent(1, 1));
+        bus.postCoalesced(new KeyedEvent(1, 2));
+        bus.postCoalesced(new KeyedEvent(2, 5));
+        bus.postCoalesced(new KeyedEvent(1, 3));
+        check(delivered.isEmpty(), "events where dispatched before the flush");
+        check(bus.flushCoalesced() == 2, "merged events where not combined per key");
+        check(sum(delivered, 1) == 6, "merger did not combine every event of key 1");
+        check(sum(delivered, 2) == 5, "key 2 was changed by merging key 1");
+    }
+    
+    private static void overflow(){
+        List<KeyedEvent> delivered = new ArrayList<>();
+        EventBus bus = createBus(delivered, 2);
+        bus.postCoalesced(new KeyedEvent(1, 1));
+        bus.postCoalesced(new KeyedEvent(2, 1));
+        bus.postCoalesced(new KeyedEvent(3, 1));
+        check(delivered.size() == 1 && delivered.get(0).key == 3, "new key past the capacity was not dispatched right away");
+        
+        // Staged keys still merge while the stage is full.
+        bus.postCoalesced(new KeyedEvent(1, 1));
+        check(delivered.size() == 1, "staged key was dispatched while the stage was full");
+        check(bus.flushCoalesced() == 2, "flush did not deliver the staged keys");
+        check(sum(delivered, 1) == 2, "staged key did not merge while the stage was full");
+    }
+    
+    private static void flushing(){
+        List<KeyedEvent> delivered = new ArrayList<>();
+        EventBus bus = createBus(delivered, 2);
+        bus.postCoalesced(new KeyedEvent(1, 1));
+        bus.postCoalesced(new KeyedEvent(2, 1));
+        check(bus.flushCoalesced() == 2, "flush did not deliver the staged keys");
+        check(bus.flushCoalesced() == 0, "second flush delivered events again");
+        
+        // Flushing frees the slots again.
+        delivered.clear();
+        bus.postCoalesced(new KeyedEvent(3, 1));
+        bus.postCoalesced(new KeyedEvent(4, 1));
+        check(delivered.isEmpty(), "flush did not release the staged slots");
+        check(bus.flushCoalesced() == 2, "flush did not deliver the restaged keys");
+    }
+    
+    private static void concurrentCapacity() throws InterruptedException{
+        final int threadCount = 8;
+        final int keysPerThread = 1000;
+        final int capacity = 64;
+        
+        List<KeyedEvent> delivered = Collections.synchronizedList(new ArrayList<>());
+        EventBus bus = createBus(delivered, capacity);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger keys = new AtomicInteger();
+        Thread[] threads = new Thread[threadCount];
+        for(int i = 0; i < threadCount; i++){
+            threads[i] = new Thread(()->{
+                try{
+                    start.await();
+                }catch(InterruptedException e){
+                    return;
+                }
+                for(int j = 0; j < keysPerThread; j++){
+                    bus.postCoalesced(new KeyedEvent(keys.getAndIncrement(), 1));
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for(Thread thread : threads){
+            thread.join();
+        }
+        
+        int dispatched = delivered.size();
+        int flushed = bus.flushCoalesced();
+        check(flushed == capacity, "stage held " + flushed + " keys with a capacity of " + capacity);
+        check(dispatched + flushed == threadCount * keysPerThread, "events where lost while racing for slots");
+    }
+    
+    private static void nullMerge(){
+        List<KeyedEvent> delivered = new ArrayList<>();
+        EventBus bus = EventBus.createInstance();
+        bus.registerEvent(KeyedEvent.class);
+        bus.registerHandler(KeyedEvent.class, delivered::add);
+        bus.<Void, KeyedEvent>registerCoalescing(KeyedEvent.class, (event)->event.key, (staged, posted)->null, 1);
+        bus.postCoalesced(new KeyedEvent(1, 1));
+        boolean threw = false;
+        try{
+            bus.postCoalesced(new KeyedEvent(1, 2));
+        }catch(NullPointerException e){
+            threw = true;
+        }
+        check(threw, "null merge result was accepted");
+        check(delivered.isEmpty(), "event with a null merge result was dispatched");
+        check(bus.flushCoalesced() == 1 && delivered.get(0).value == 1, "null merge result lost the staged event");
+        
+        // The slot has to be free again after the flush.
+        bus.postCoalesced(new KeyedEvent(2, 1));
+        check(delivered.size() == 1, "null merge result leaked its slot");
+    }
+    
+    private static int sum(List<KeyedEvent> events, int key){
+        int sum = 0;
+        for(KeyedEvent event : events){
+            if(event.key == key){
+                sum += event.value;
+            }
+        }
+        return sum;
+    }
+    
+    private static void check(boolean condition, String message){
+        if(!condition){
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package net.gudenau.eventtest;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventBus;
+import net.gudenau.events.EventDispatcher;
+
+/**
+ * Measures the retained heap of dispatchers and buses, JOL style but without the dependency.
+ *
+ * Every instance gets the same two handlers and dispatches one event, so the generated consumers exist.
+ */
+public class FootprintTest{
+    private static final int instanceCount = 100_000;
+    
+    private FootprintTest(){}
+    
+    private static final class TestEvent extends Event.NonCancelable<Void>{}
+    
+    private static final Consumer<TestEvent> handler0 = (event)->{};
+    private static final Consumer<TestEvent> handler1 = (event)->{};
+    
+    public static void main(String[] args){
+        measure("dispatcher", ()->dispatcher(EventDispatcher.createInstance()));
+        measure("compact dispatcher", ()->dispatcher(EventDispatcher.createCompactInstance()));
+        measure("bus", ()->bus(EventBus.createInstance()));
+        measure("compact bus", ()->bus(EventBus.createCompactInstance()));
+    }
+    
+    private static EventDispatcher<Void, TestEvent> dispatcher(EventDispatcher<Void, TestEvent> dispatcher){
+        dispatcher.registerHandler(handler0);
+        dispatcher.registerHandler(handler1);
+        dispatcher.dispatchEvent(new TestEvent());
+        return dispatcher;
+    }
+    
+    private static EventBus bus(EventBus bus){
+        bus.registerEvent(TestEvent.class);
+        bus.registerHandler(TestEvent.class, handler0);
+        bus.registerHandler(TestEvent.class, handler1);
+        bus.dispatchEvent(new TestEvent());
+        return bus;
+    }
+    
+    private static void measure(String label, Supplier<Object> factory){
+        // Warm up the shared state, like generated classes and interned handler lists.
+        Object keep = factory.get();
+        
+        Object[] instances = new Object[instanceCount];
+        long before = usedMemory();
+        for(int i = 0; i < instanceCount; i++){
+            instances[i] = factory.get();
+        }
+        long after = usedMemory();
+        
+        System.out.println(label + ": " + (after - before) / instanceCount + " bytes per instance");
+        if(instances[instanceCount - 1] == null || keep == null){
+            throw new AssertionError();
+        }
+    }
+    
+    private static long usedMemory(){
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 4; i++){
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,162 @@
+package net.gudenau.eventtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Consumer;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventBus;
+import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.HandlerGroup;
+
+/**
+ * Checks the generated grouped consumers: toggling groups, canceling inside a group and grouped handlers on every
+ * kind of dispatcher.
+ */
+public class HandlerGroupTest{
+    private HandlerGroupTest(){}
+    
+    private static final class PlainEvent extends Event.NonCancelable<Void>{}
+    private static final class CancelableEvent extends Event.Cancelable<Void>{}
+    
+    private static final HandlerGroup FIRST = HandlerGroup.named("eventtest:first");
+    private static final HandlerGroup SECOND = HandlerGroup.named("eventtest:second");
+    
+    public static void main(String[] args){
+        toggling(EventDispatcher.createInstance(), false);
+        toggling(EventDispatcher.createCompactInstance(), false);
+        toggling(EventDispatcher.createInstance(), true);
+        firstHandlerGrouped();
+        canceling(EventDispatcher.createInstance(), false);
+        canceling(EventDispatcher.createCompactInstance(), false);
+        canceling(EventDispatcher.createInstance(), true);
+        removing();
+        bus();
+        exhaustion();
+        System.out.println("Handler group checks passed");
+    }
+    
+    private static void toggling(EventDispatcher<Void, PlainEvent> dispatcher, boolean freeze){
+        List<String> called = new ArrayList<>();
+        dispatcher.registerHandler((event)->called.add("plain"));
+        dispatcher.registerHandler(FIRST, (event)->called.add("first"));
+        dispatcher.registerHandler(SECOND, (event)->called.add("second"));
+        if(freeze){
+            dispatcher = dispatcher.freeze();
+        }
+        
+        check(same(dispatch(dispatcher, called), "plain", "first", "second"), "enabled groups where not all called");
+        FIRST.setEnabled(false);
+        check(!FIRST.isEnabled(), "disabled group reports itself enabled");
+        check(same(dispatch(dispatcher, called), "plain", "second"), "disabled group was called");
+        SECOND.setEnabled(false);
+        check(same(dispatch(dispatcher, called), "plain"), "handler without a group was skipped");
+        FIRST.setEnabled(true);
+        SECOND.setEnabled(true);
+        check(same(dispatch(dispatcher, called), "plain", "first", "second"), "re-enabled groups where not called");
+    }
+    
+    private static void firstHandlerGrouped(){
+        // The first handler of a grouped consumer is where the mask local is introduced.
+        EventDispatcher<Void, PlainEvent> dispatcher = EventDispatcher.createInstance();
+        List<String> called = new ArrayList<>();
+        dispatcher.registerHandler(FIRST, (event)->called.add("first"));
+        check(same(dispatch(dispatcher, called), "first"), "single grouped handler was not called");
+        FIRST.setEnabled(false);
+        check(dispatch(dispatcher, called).isEmpty(), "single disabled handler was called");
+        FIRST.setEnabled(true);
+    }
+    
+    private static void canceling(EventDispatcher<Void, CancelableEvent> dispatcher, boolean freeze){
+        List<String> called = new ArrayList<>();
+        dispatcher.registerHandler((event)->called.add("plain"));
+        dispatcher.registerHandler(FIRST, (event)->{
+            called.add("first");
+            event.cancel();
+        });
+        dispatcher.registerHandler(SECOND, (event)->called.add("second"));
+        dispatcher.registerHandler((event)->called.add("last"));
+        if(freeze){
+            dispatcher = dispatcher.freeze();
+        }
+        
+        called.clear();
+        CancelableEvent event = new CancelableEvent();
+        dispatcher.dispatchEvent(event);
+        check(event.wasCanceled(), "grouped handler could not cancel the event");
+        // The mutable dispatcher has no defined handler order, but nothing may run after the cancel.
+        check(called.get(called.size() - 1).equals("first"), "handlers after a cancel inside a group where called: " + called);
+        
+        // A disabled group can not cancel anything.
+        FIRST.setEnabled(false);
+        called.clear();
+        event = new CancelableEvent();
+        dispatcher.dispatchEvent(event);
+        check(!event.wasCanceled(), "disabled group canceled the event");
+        check(same(called, "plain", "second", "last"), "handlers after a disabled group where skipped: " + called);
+        
+        // Skipping grouped handlers must not skip the handlers around them.
+        SECOND.setEnabled(false);
+        called.clear();
+        dispatcher.dispatchEvent(new CancelableEvent());
+        check(same(called, "plain", "last"), "handler after two disabled groups was skipped: " + called);
+        FIRST.setEnabled(true);
+        SECOND.setEnabled(true);
+    }
+    
+    private static void removing(){
+        EventDispatcher<Void, PlainEvent> dispatcher = EventDispatcher.createInstance();
+        List<String> called = new ArrayList<>();
+        Consumer<PlainEvent> handler = (event)->called.add("first");
+        dispatcher.registerHandler((event)->called.add("plain"));
+        dispatcher.registerHandler(FIRST, handler);
+        check(same(dispatch(dispatcher, called), "plain", "first"), "grouped handler was not called");
+        dispatcher.removeHandler(handler);
+        check(same(dispatch(dispatcher, called), "plain"), "grouped handler was not removed");
+    }
+    
+    private static void bus(){
+        EventBus bus = EventBus.createInstance();
+        bus.registerEvent(PlainEvent.class);
+        List<String> called = new ArrayList<>();
+        bus.registerHandler(PlainEvent.class, SECOND, (event)->called.add("second"));
+        bus.dispatchEvent(new PlainEvent());
+        check(called.equals(Arrays.asList("second")), "grouped bus handler was not called");
+        SECOND.setEnabled(false);
+        bus.dispatchEvent(new PlainEvent());
+        check(called.size() == 1, "disabled grouped bus handler was called");
+        SECOND.setEnabled(true);
+        
+        check(HandlerGroup.named("eventtest:first") == FIRST, "the same name did not return the same group");
+    }
+    
+    private static void exhaustion(){
+        // Runs last, the groups are never freed.
+        boolean threw = false;
+        try{
+            for(int i = 0; i < 64; i++){
+                HandlerGroup.named("eventtest:filler" + i);
+            }
+        }catch(IllegalStateException e){
+            threw = e.getMessage().contains("eventtest:first");
+        }
+        check(threw, "running out of groups did not fail with the existing groups listed");
+    }
+    
+    private static List<String> dispatch(EventDispatcher<Void, PlainEvent> dispatcher, List<String> called){
+        called.clear();
+        dispatcher.dispatchEvent(new PlainEvent());
+        return called;
+    }
+    
+    private static boolean same(List<String> called, String... expected){
+        return called.size() == expected.length && new HashSet<>(called).equals(new HashSet<>(Arrays.asList(expected)));
+    }
+    
+    private static void check(boolean condition, String message){
+        if(!condition){
+            throw new AssertionError(message);
+        }
+    }
+}
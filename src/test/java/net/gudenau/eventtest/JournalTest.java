@@ -0,0 +1,146 @@
+package net.gudenau.eventtest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventBus;
+import net.gudenau.events.EventCodec;
+import net.gudenau.events.EventJournal;
+
+/**
+ * Records events into a journal and replays them: nested dispatches, and appending after a record was cut off.
+ */
+public class JournalTest{
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int SEGMENT_HEADER_SIZE = 16;
+    
+    private JournalTest(){}
+    
+    public static final class TextEvent extends Event.NonCancelable<Void>{
+        private String text;
+        
+        public TextEvent(String text){
+            this.text = text;
+        }
+    }
+    
+    public static final class InnerEvent extends Event.NonCancelable<Void>{
+        private String text;
+        
+        public InnerEvent(String text){
+            this.text = text;
+        }
+    }
+    
+    public static void main(String[] args) throws IOException{
+        Path directory = Files.createTempDirectory("gudEvents");
+        try{
+            nestedDispatch(directory.resolve("nested"));
+            resumeAfterCrash(directory.resolve("resume"));
+        }finally{
+            delete(directory);
+        }
+        System.out.println("Journal checks passed");
+    }
+    
+    private static void nestedDispatch(Path directory) throws IOException{
+        EventBus bus = createBus();
+        bus.registerHandler(TextEvent.class, (event)->bus.dispatchEvent(new InnerEvent("inner of " + event.text)));
+        try(EventJournal journal = EventJournal.open(directory, SEGMENT_SIZE)){
+            journal.record(TextEvent.class, EventCodec.generate(TextEvent.class));
+            journal.record(InnerEvent.class, EventCodec.generate(InnerEvent.class));
+            bus.setJournal(journal);
+            bus.dispatchEvent(new TextEvent("outer"));
+            bus.setJournal(null);
+        }
+        
+        List<String> replayed = replay(directory, 2);
+        check(replayed.get(0).equals("inner of outer"), "inner event was replayed as " + replayed.get(0));
+        check(replayed.get(1).equals("outer"), "outer event was replayed as " + replayed.get(1));
+    }
+    
+    private static void resumeAfterCrash(Path directory) throws IOException{
+        EventBus bus = createBus();
+        try(EventJournal journal = EventJournal.open(directory, SEGMENT_SIZE)){
+            journal.record(TextEvent.class, EventCodec.generate(TextEvent.class));
+            bus.setJournal(journal);
+            bus.dispatchEvent(new TextEvent("first"));
+            bus.dispatchEvent(new TextEvent(repeat('x', 256)));
+            bus.setJournal(null);
+        }
+        
+        // A crash before the length of a record is written leaves its body without a length.
+        Path segment = directory.resolve("segment-00000000.journal");
+        try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            int second = SEGMENT_HEADER_SIZE + Integer.BYTES + buffer.getInt(SEGMENT_HEADER_SIZE);
+            buffer.putInt(second, 0);
+        }
+        
+        try(EventJournal journal = EventJournal.open(directory, SEGMENT_SIZE)){
+            journal.record(TextEvent.class, EventCodec.generate(TextEvent.class));
+            bus.setJournal(journal);
+            bus.dispatchEvent(new TextEvent("second"));
+            bus.dispatchEvent(new TextEvent("third"));
+            bus.setJournal(null);
+        }
+        
+        List<String> replayed = replay(directory, 3);
+        check(replayed.get(0).equals("first"), "first event was replayed as " + replayed.get(0));
+        check(replayed.get(1).equals("second"), "second event was replayed as " + replayed.get(1));
+        check(replayed.get(2).equals("third"), "third event was replayed as " + replayed.get(2));
+    }
+    
+    private static EventBus createBus(){
+        EventBus bus = EventBus.createInstance();
+        bus.registerEvent(TextEvent.class);
+        bus.registerEvent(InnerEvent.class);
+        return bus;
+    }
+    
+    private static List<String> replay(Path directory, int expected) throws IOException{
+        List<String> replayed = new ArrayList<>();
+        EventBus bus = createBus();
+        bus.registerHandler(TextEvent.class, (event)->replayed.add(event.text));
+        bus.registerHandler(InnerEvent.class, (event)->replayed.add(event.text));
+        
+        EventJournal.Replayer replayer = EventJournal.replayer(directory);
+        replayer.bind(TextEvent.class, EventCodec.generate(TextEvent.class));
+        replayer.bind(InnerEvent.class, EventCodec.generate(InnerEvent.class));
+        EventJournal.ReplayResult result = replayer.replay(bus, EventJournal.Pacing.FULL_SPEED);
+        check(result.getEvents() == expected && replayed.size() == expected, "replayed " + replayed.size() + " of " + expected + " events");
+        return replayed;
+    }
+    
+    private static String repeat(char character, int count){
+        StringBuilder builder = new StringBuilder(count);
+        for(int i = 0; i < count; i++){
+            builder.append(character);
+        }
+        return builder.toString();
+    }
+    
+    private static void delete(Path path) throws IOException{
+        if(Files.isDirectory(path)){
+            try(DirectoryStream<Path> stream = Files.newDirectoryStream(path)){
+                for(Path child : stream){
+                    delete(child);
+                }
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+    
+    private static void check(boolean condition, String message){
+        if(!condition){
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package net.gudenau.eventtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventBus;
+
+/**
+ * A soak test that models a production mix instead of a single hot loop.
+ *
+ * Producer threads dispatch a skewed mix of cancelable and non-cancelable event types at a fixed rate, the types have
+ * skewed handler counts and a churn thread keeps replacing handlers. Latency is measured from when a dispatch was
+ * supposed to start, so a stalled producer still counts the dispatches it could not send (coordinated omission).
+ *
+ * Options are passed as key=value arguments, see {@link #main(String[])}.
+ */
+public class LoadGenerator{
+    private LoadGenerator(){}
+    
+    private static final class Load0 extends Event.NonCancelable<Integer>{ Load0(int value){ super(value); } }
+    private static final class Load1 extends Event.Cancelable<Integer>{ Load1(int value){ super(value); } }
+    private static final class Load2 extends Event.NonCancelable<Integer>{ Load2(int value){ super(value); } }
+    private static final class Load3 extends Event.Cancelable<Integer>{ Load3(int value){ super(value); } }
+    private static final class Load4 extends Event.NonCancelable<Integer>{ Load4(int value){ super(value); } }
+    private static final class Load5 extends Event.Cancelable<Integer>{ Load5(int value){ super(value); } }
+    private static final class Load6 extends Event.NonCancelable<Integer>{ Load6(int value){ super(value); } }
+    private static final class Load7 extends Event.Cancelable<Integer>{ Load7(int value){ super(value); } }
+    
+    private static final List<Class<? extends Event<Integer>>> types = new ArrayList<>();
+    private static final List<IntFunction<Event<Integer>>> factories = new ArrayList<>();
+    // For handlers that run on other threads, like a parallel dispatch or a deferred flush.
+    private static final LongAdder sharedSink = new LongAdder();
+    
+    static{
+        addType(Load0.class, Load0::new);
+        addType(Load1.class, Load1::new);
+        addType(Load2.class, Load2::new);
+        addType(Load3.class, Load3::new);
+        addType(Load4.class, Load4::new);
+        addType(Load5.class, Load5::new);
+        addType(Load6.class, Load6::new);
+        addType(Load7.class, Load7::new);
+    }
+    
+    private static void addType(Class<? extends Event<Integer>> type, IntFunction<Event<Integer>> factory){
+        types.add(type);
+        factories.add(factory);
+    }
+    
+    /**
+     * Runs the load test.
+     *
+     * Options:
+     *  - bus=shared|new|compact|frozen, which bus to load, frozen disables churn (default shared)
+     *  - producers=N, the amount of producer threads (default 4)
+     *  - rate=N, dispatches per second per producer, 0 for as fast as possible (default 20000)
+     *  - seconds=N, how long to measure (default 30)
+     *  - warmup=N, how long to run before measuring (default 5)
+     *  - handlers=N, the handler count of the most popular type, the others get less (default 32)
+     *  - churn=N, milliseconds between handler replacements, 0 to disable (default 100)
+     *
+     * @param args The options
+     */
+    public static void main(String[] args) throws InterruptedException{
+        Map<String, String> options = new HashMap<>();
+        for(String arg : args){
+            int split = arg.indexOf('=');
+            if(split <= 0){
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+        String busName = options.getOrDefault("bus", "shared");
+        int producerCount = Integer.parseInt(options.getOrDefault("producers", "4"));
+        int rate = Integer.parseInt(options.getOrDefault("rate", "20000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int maxHandlers = Integer.parseInt(options.getOrDefault("handlers", "32"));
+        int churnMillis = Integer.parseInt(options.getOrDefault("churn", "100"));
+        
+        EventBus bus;
+        switch(busName){
+            case "shared": bus = EventBus.getInstance(); break;
+            case "new": case "frozen": bus = EventBus.createInstance(); break;
+            case "compact": bus = EventBus.createCompactInstance(); break;
+            default: throw new IllegalArgumentException("Unknown bus " + busName);
+        }
+        
+        // Zipf-like skew, type 0 is the most popular and has the most handlers.
+        double[] weights = new double[types.size()];
+        double totalWeight = 0;
+        for(int i = 0; i < weights.length; i++){
+            totalWeight += 1.0 / (i + 1);
+            weights[i] = totalWeight;
+        }
+        for(int i = 0; i < weights.length; i++){
+            weights[i] /= totalWeight;
+        }
+        
+        List<List<Consumer<Event<Integer>>>> handlers = new ArrayList<>();
+        for(int i = 0; i < types.size(); i++){
+            Class<? extends Event<Integer>> type = types.get(i);
+            try{
+                bus.registerEvent(type);
+            }catch(IllegalStateException ignored){
+                // The shared bus may already know it from an earlier run in this JVM.
+            }
+            List<Consumer<Event<Integer>>> typeHandlers = new ArrayList<>();
+            for(int j = 0, count = Math.max(1, maxHandlers / (i + 1)); j < count; j++){
+                Consumer<Event<Integer>> handler = createHandler();
+                registerHandler(bus, type, handler);
+                typeHandlers.add(handler);
+            }
+            handlers.add(typeHandlers);
+        }
+        if(busName.equals("frozen")){
+            bus.freeze();
+            churnMillis = 0;
+        }
+        
+        System.out.println("Bus " + busName + ", " + producerCount + " producers at " + (rate == 0 ? "full speed" : rate + "/s each") + ", " + types.size() + " types, churn every " + (churnMillis == 0 ? "never" : churnMillis + "ms"));
+        
+        Producer[] producers = new Producer[producerCount];
+        for(int i = 0; i < producerCount; i++){
+            producers[i] = new Producer(bus, weights, rate);
+            producers[i].setName("Producer " + i);
+            producers[i].setDaemon(true);
+        }
+        Thread churn = null;
+        if(churnMillis > 0){
+            int delay = churnMillis;
+            churn = new Thread(()->churn(bus, handlers, delay), "Churn");
+            churn.setDaemon(true);
+        }
+        
+        for(Producer producer : producers){
+            producer.start();
+        }
+        if(churn != null){
+            churn.start();
+        }
+        
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmup));
+        for(Producer producer : producers){
+            producer.measuring = true;
+        }
+        
+        long metaspaceBefore = metaspaceUsed();
+        int classesBefore = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long lastCount = 0;
+        long lastGcCount = gcCountBefore;
+        long lastGcTime = gcTimeBefore;
+        for(int second = 1; second <= seconds; second++){
+            Thread.sleep(1000);
+            long count = 0;
+            for(Producer producer : producers){
+                count += producer.count.sum();
+            }
+            long gcCount = gcCount();
+            long gcTime = gcTime();
+            System.out.printf(
+                "%4ds %10d ops/s  gc %3d (%4dms)  metaspace %6dKiB%n",
+                second, count - lastCount, gcCount - lastGcCount, gcTime - lastGcTime, metaspaceUsed() / 1024
+            );
+            lastCount = count;
+            lastGcCount = gcCount;
+            lastGcTime = gcTime;
+        }
+        
+        for(Producer producer : producers){
+            producer.running = false;
+        }
+        for(Producer producer : producers){
+            producer.join();
+        }
+        if(churn != null){
+            churn.interrupt();
+            churn.join();
+        }
+        
+        Histogram corrected = new Histogram();
+        Histogram uncorrected = new Histogram();
+        for(Producer producer : producers){
+            corrected.add(producer.corrected);
+            uncorrected.add(producer.uncorrected);
+        }
+        
+        System.out.println();
+        System.out.println("Dispatches: " + corrected.count() + " (" + corrected.count() / Math.max(1, seconds) + "/s)");
+        System.out.println("Latency (ns)     " + header());
+        System.out.println("  corrected      " + corrected.summary());
+        System.out.println("  uncorrected    " + uncorrected.summary());
+        System.out.println("GC: " + (gcCount() - gcCountBefore) + " collections, " + (gcTime() - gcTimeBefore) + "ms");
+        System.out.println("Metaspace growth: " + (metaspaceUsed() - metaspaceBefore) / 1024 + "KiB, " + (ManagementFactory.getClassLoadingMXBean().getLoadedClassCount() - classesBefore) + " classes");
+        // Keeps the handlers from being optimized away.
+        long sink = sharedSink.sum();
+        for(Producer producer : producers){
+            sink += producer.sink;
+        }
+        if(sink == 42){
+            System.out.println();
+        }
+    }
+    
+    private static Consumer<Event<Integer>> createHandler(){
+        int salt = ThreadLocalRandom.current().nextInt();
+        return (event)->{
+            int value = event.getOriginalValue().orElse(0);
+            // Every handler cancels roughly one in 1024 of the cancelable events.
+            if(event.isCancelable() && ((value ^ salt) & 0x3FF) == 0){
+                event.cancel();
+            }
+            // Producers get their own sink, a shared one would make them contend on its cache line.
+            Thread thread = Thread.currentThread();
+            if(thread instanceof Producer){
+                ((Producer)thread).sink += value * salt;
+            }else{
+                sharedSink.add(value * salt);
+            }
+        };
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void registerHandler(EventBus bus, Class<? extends Event<Integer>> type, Consumer<Event<Integer>> handler){
+        bus.registerHandler((Class)type, (Consumer)handler);
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void removeHandler(EventBus bus, Class<? extends Event<Integer>> type, Consumer<Event<Integer>> handler){
+        bus.removeHandler((Class)type, (Consumer)handler);
+    }
+    
+    /**
+     * Replaces a random handler of a random type at a fixed interval, which throws away the consumer of the type.
+     */
+    private static void churn(EventBus bus, List<List<Consumer<Event<Integer>>>> handlers, int delay){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while(!Thread.currentThread().isInterrupted()){
+            int type = random.nextInt(handlers.size());
+            List<Consumer<Event<Integer>>> typeHandlers = handlers.get(type);
+            Consumer<Event<Integer>> handler = createHandler();
+            registerHandler(bus, types.get(type), handler);
+            removeHandler(bus, types.get(type), typeHandlers.set(random.nextInt(typeHandlers.size()), handler));
+            try{
+                Thread.sleep(delay);
+            }catch(InterruptedException e){
+                return;
+            }
+        }
+    }
+    
+    private static final class Producer extends Thread{
+        private final EventBus bus;
+        private final double[] weights;
+        private final long interval;
+        private final LongAdder count = new LongAdder();
+        private final Histogram corrected = new Histogram();
+        private final Histogram uncorrected = new Histogram();
+        private volatile boolean measuring = false;
+        private volatile boolean running = true;
+        // Written by the handlers on this thread, read after it is joined.
+        private long sink = 0;
+        
+        private Producer(EventBus bus, double[] weights, int rate){
+            this.bus = bus;
+            this.weights = weights;
+            this.interval = rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / rate;
+        }
+        
+        @Override
+        public void run(){
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long intended = System.nanoTime();
+            boolean measured = false;
+            while(running){
+                if(interval != 0){
+                    intended += interval;
+                    long wait;
+                    while((wait = intended - System.nanoTime()) > 0){
+                        if(wait > 50_000){
+                            LockSupport.parkNanos(wait - 50_000);
+                        }else{
+                            Thread.yield();
+                        }
+                    }
+                }
+                
+                double pick = random.nextDouble();
+                int type = 0;
+                while(weights[type] < pick){
+                    type++;
+                }
+                Event<Integer> event = factories.get(type).apply(random.nextInt());
+                
+                long start = System.nanoTime();
+                bus.dispatchEvent(event);
+                long end = System.nanoTime();
+                
+                if(!measured){
+                    measured = measuring;
+                    if(measured && interval != 0){
+                        // Do not charge the warmup backlog to the measurement.
+                        intended = end;
+                    }
+                    continue;
+                }
+                // Measured from when the dispatch should have started, so falling behind shows up as latency.
+                corrected.record(end - (interval == 0 ? start : intended));
+                uncorrected.record(end - start);
+                count.increment();
+            }
+        }
+    }
+    
+    /**
+     * A log-linear histogram with about 1% precision, like a tiny HdrHistogram.
+     *
+     * Values below 128 are exact, above that every power of two is split into 64 buckets.
+     */
+    private static final class Histogram{
+        private static final int SUB_BITS = 6;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        
+        private final long[] counts = new long[(64 - SUB_BITS) * SUB_COUNT + SUB_COUNT];
+        private long total = 0;
+        private long max = 0;
+        
+        private static int index(long value){
+            int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+            return shift * SUB_COUNT + (int)(value >>> shift);
+        }
+        
+        private static long highestValue(int index){
+            int shift = Math.max(0, index / SUB_COUNT - 1);
+            long top = index - shift * SUB_COUNT;
+            return ((top + 1) << shift) - 1;
+        }
+        
+        void record(long value){
+            value = Math.max(0, value);
+            counts[index(value)]++;
+            total++;
+            max = Math.max(max, value);
+        }
+        
+        void add(Histogram other){
+            for(int i = 0; i < counts.length; i++){
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+        
+        long count(){
+            return total;
+        }
+        
+        long percentile(double percentile){
+            long target = (long)Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for(int i = 0; i < counts.length; i++){
+                seen += counts[i];
+                if(seen >= target && seen != 0){
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+        
+        String summary(){
+            return String.format("%10d %10d %10d %10d", percentile(50), percentile(99), percentile(99.9), max);
+        }
+    }
+    
+    private static String header(){
+        return String.format("%10s %10s %10s %10s", "p50", "p99", "p99.9", "max");
+    }
+    
+    private static long gcCount(){
+        long count = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()){
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+    
+    private static long gcTime(){
+        long time = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()){
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+    
+    private static long metaspaceUsed(){
+        for(MemoryPoolMXBean bean : ManagementFactory.getMemoryPoolMXBeans()){
+            if(bean.getName().equals("Metaspace")){
+                return bean.getUsage().getUsed();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,86 @@
+package net.gudenau.eventtest;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventDispatcher;
+
+/**
+ * Runs 8 heavy and 100 cheap handlers with parallel dispatch from a few threads.
+ *
+ * Every handler has to run exactly once per dispatch, the heavy ones have to end up on the pool and the cheap ones
+ * have to stay on the dispatching threads.
+ */
+public class ParallelTest{
+    private static final int HEAVY_COUNT = 8;
+    private static final int CHEAP_COUNT = 100;
+    private static final int THREAD_COUNT = 2;
+    private static final int DISPATCH_COUNT = 2000;
+    private static final long HEAVY_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    
+    private ParallelTest(){}
+    
+    private static final class TestEvent extends Event.NonCancelable<Void>{}
+    
+    public static void main(String[] args) throws InterruptedException{
+        ForkJoinPool pool = new ForkJoinPool(4);
+        EventDispatcher<Void, TestEvent> dispatcher = EventDispatcher.createInstance();
+        dispatcher.setParallel(pool);
+        
+        AtomicIntegerArray calls = new AtomicIntegerArray(HEAVY_COUNT + CHEAP_COUNT);
+        AtomicInteger heavyForked = new AtomicInteger();
+        AtomicInteger cheapForked = new AtomicInteger();
+        for(int i = 0; i < HEAVY_COUNT; i++){
+            int index = i;
+            dispatcher.registerHandler((event)->{
+                calls.incrementAndGet(index);
+                if(Thread.currentThread() instanceof ForkJoinWorkerThread){
+                    heavyForked.incrementAndGet();
+                }
+                long end = System.nanoTime() + HEAVY_NANOS;
+                while(System.nanoTime() - end < 0){
+                    // Busy, like a handler that does real work.
+                }
+            });
+        }
+        for(int i = 0; i < CHEAP_COUNT; i++){
+            int index = HEAVY_COUNT + i;
+            dispatcher.registerHandler((event)->{
+                calls.incrementAndGet(index);
+                if(Thread.currentThread() instanceof ForkJoinWorkerThread){
+                    cheapForked.incrementAndGet();
+                }
+            });
+        }
+        
+        Thread[] threads = new Thread[THREAD_COUNT];
+        for(int i = 0; i < THREAD_COUNT; i++){
+            threads[i] = new Thread(()->{
+                for(int j = 0; j < DISPATCH_COUNT; j++){
+                    dispatcher.dispatchEvent(new TestEvent());
+                }
+            });
+            threads[i].start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        pool.shutdown();
+        
+        for(int i = 0; i < calls.length(); i++){
+            check(calls.get(i) == THREAD_COUNT * DISPATCH_COUNT, "handler " + i + " ran " + calls.get(i) + " times");
+        }
+        check(heavyForked.get() > 0, "heavy handlers never ran on the pool");
+        check(cheapForked.get() == 0, "cheap handlers ran on the pool " + cheapForked.get() + " times");
+        System.out.println("Parallel checks passed, " + heavyForked.get() + " heavy calls ran on the pool");
+    }
+    
+    private static void check(boolean condition, String message){
+        if(!condition){
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package net.gudenau.eventtest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import net.gudenau.events.Event;
+import net.gudenau.events.EventDispatcher;
+import net.gudenau.events.HandlerGroup;
+import net.gudenau.events.ResultCache;
+
+/**
+ * Checks the result cache: hits and misses, invalidation when the handlers change and when a handler group is toggled.
+ */
+public class ResultCacheTest{
+    private ResultCacheTest(){}
+    
+    private static final class SquareEvent extends Event.Cancelable<Integer>{
+        private SquareEvent(int value){
+            super(value);
+        }
+    }
+    
+    public static void main(String[] args){
+        hitsAndMisses();
+        cancellation();
+        registerInvalidates();
+        manualInvalidation();
+        groupToggle();
+        System.out.println("Result cache checks passed");
+    }
+    
+    private static Consumer<SquareEvent> squaring(AtomicInteger calls){
+        return (event)->{
+            calls.incrementAndGet();
+            int value = event.getOriginalValue().orElse(0);
+            event.setValue(value * value);
+        };
+    }
+    
+    private static int square(EventDispatcher<Integer, SquareEvent> dispatcher, int value){
+        return dispatcher.dispatchEvent(new SquareEvent(value)).orElse(-1);
+    }
+    
+    private static void hitsAndMisses(){
+        EventDispatcher<Integer, SquareEvent> dispatcher = EventDispatcher.createInstance();
+        AtomicInteger calls = new AtomicInteger();
+        dispatcher.registerHandler(squaring(calls));
+        ResultCache cache = dispatcher.enableResultCache(16);
+        
+        check(square(dispatcher, 3) == 9, "first dispatch returned the wrong result");
+        check(calls.get() == 1 && cache.getMissCount() == 1, "first dispatch was not a miss");
+        check(square(dispatcher, 3) == 9, "cached dispatch returned the wrong result");
+        check(calls.get() == 1 && cache.getHitCount() == 1, "second dispatch of the same value ran the handlers");
+        check(square(dispatcher, 4) == 16, "other value returned the wrong result");
+        check(calls.get() == 2 && cache.getMissCount() == 2, "other value was answered from the cache");
+        check(cache.getSize() == 2, "cache holds " + cache.getSize() + " results instead of 2");
+        check(cache.getCapacity() == 16, "cache reports the wrong capacity");
+    }
+    
+    private static void cancellation(){
+        EventDispatcher<Integer, SquareEvent> dispatcher = EventDispatcher.createInstance();
+        AtomicInteger calls = new AtomicInteger();
+        dispatcher.registerHandler((event)->{
+            calls.incrementAndGet();
+            event.cancel(-event.getOriginalValue().orElse(0));
+        });
+        dispatcher.enableResultCache(16);
+        
+        square(dispatcher, 5);
+        SquareEvent event = new SquareEvent(5);
+        dispatcher.dispatchEvent(event);
+        check(calls.get() == 1, "canceled result was not cached");
+        check(event.wasCanceled() && event.getResult().orElse(0) == -5, "cached dispatch did not restore the cancellation");
+    }
+    
+    private static void registerInvalidates(){
+        EventDispatcher<Integer, SquareEvent> dispatcher = EventDispatcher.createInstance();
+        AtomicInteger calls = new AtomicInteger();
+        dispatcher.registerHandler(squaring(calls));
+        ResultCache cache = dispatcher.enableResultCache(16);
+        square(dispatcher, 3);
+        
+        AtomicInteger extra = new AtomicInteger();
+        dispatcher.registerHandler((event)->extra.incrementAndGet());
+        check(cache.getInvalidationCount() == 1, "registering a handler did not invalidate the cache");
+        square(dispatcher, 3);
+        check(calls.get() == 2 && extra.get() == 1, "dispatch after registering was answered from the cache");
+    }
+    
+    private static void manualInvalidation(){
+        EventDispatcher<Integer, SquareEvent> dispatcher = EventDispatcher.createInstance();
+        AtomicInteger calls = new AtomicInteger();
+        dispatcher.registerHandler(squaring(calls));
+        ResultCache cache = dispatcher.enableResultCache(16);
+        square(dispatcher, 3);
+        cache.invalidate();
+        check(cache.getSize() == 0, "invalidate left results in the cache");
+        square(dispatcher, 3);
+        check(calls.get() == 2, "dispatch after invalidate was answered from the cache");
+    }
+    
+    private static void groupToggle(){
+        HandlerGroup group = HandlerGroup.named("eventtest:result-cache");
+        EventDispatcher<Integer, SquareEvent> dispatcher = EventDispatcher.createInstance();
+        AtomicInteger calls = new AtomicInteger();
+        dispatcher.registerHandler(squaring(calls));
+        // Overrides the square while the group is enabled.
+        dispatcher.registerHandler(group, (event)->event.setValue(0));
+        dispatcher.enableResultCache(16);
+        
+        // The order of the handlers is not defined, only check that the result follows the group.
+        group.setEnabled(false);
+        check(square(dispatcher, 3) == 9, "disabled group changed the result");
+        group.setEnabled(true);
+        int enabled = square(dispatcher, 3);
+        check(calls.get() == 2, "result cached with the group disabled was used with the group enabled");
+        group.setEnabled(false);
+        check(square(dispatcher, 3) == 9, "result cached with the group enabled was used with the group disabled");
+        check(calls.get() == 3, "toggling the group back did not miss the cache");
+        group.setEnabled(true);
+        check(square(dispatcher, 3) == enabled && calls.get() == 4, "toggling the group again did not miss the cache");
+    }
+    
+    private static void check(boolean condition, String message){
+        if(!condition){
+            throw new AssertionError(message);
+        }
+    }
+}